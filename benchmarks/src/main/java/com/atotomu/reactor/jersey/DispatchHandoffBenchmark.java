@@ -0,0 +1,77 @@
+package com.atotomu.reactor.jersey;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求从 event loop 交给处理线程再回来的往返开销，处理逻辑本身为空：
+ * 对比原来的 Mono.create(...).subscribeOn(...) 和 disruptor ring buffer。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar DispatchHandoffBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DispatchHandoffBenchmark {
+
+    @Param({"blocking", "yielding"})
+    String waitStrategy;
+
+    @Param({"4"})
+    int workers;
+
+    private Scheduler scheduler;
+    private DisruptorDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scheduler = Schedulers.newParallel("bench-worker", workers);
+        WaitStrategy strategy = "yielding".equals(waitStrategy) ? new YieldingWaitStrategy() : new BlockingWaitStrategy();
+        dispatcher = new DisruptorDispatcher(1024, workers, strategy, 1);
+        dispatcher.start((request, writer, requestData, sink, enqueuedNanos) -> sink.success());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.dispose();
+        dispatcher.dispose();
+    }
+
+    @Benchmark
+    public Object subscribeOn() {
+        return Mono.<Void>create(sink -> sink.success()).subscribeOn(scheduler).block();
+    }
+
+    @Benchmark
+    public Object disruptor() {
+        return Mono.<Void>create(sink -> dispatcher.dispatch(null, null, null, sink)).block();
+    }
+}
@@ -0,0 +1,100 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.core.header.OutBoundHeaders;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求的请求头/响应头在 netty 和 Jersey 之间转换的开销：按 Jersey 处理一个请求时的访问方式读取请求头、
+ * 遍历全部请求头，以及把资源方法的响应头写到 netty 的响应头里。用 -prof gc 看每次的分配量。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar HeaderBridgeBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class HeaderBridgeBenchmark {
+
+    private HttpHeaders requestHeaders;
+    private OutBoundHeaders responseHeaders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        requestHeaders = new DefaultHttpHeaders()
+                .add(HttpHeaderNames.HOST, "localhost:8080")
+                .add(HttpHeaderNames.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64)")
+                .add(HttpHeaderNames.ACCEPT, "application/json, text/plain, */*")
+                .add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate")
+                .add(HttpHeaderNames.ACCEPT_LANGUAGE, "zh-CN,zh;q=0.9,en;q=0.8")
+                .add(HttpHeaderNames.CONNECTION, "keep-alive")
+                .add(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .add(HttpHeaderNames.CONTENT_LENGTH, "42")
+                .add(HttpHeaderNames.COOKIE, "session=abc")
+                .add("X-Request-Id", "3f2a9c");
+
+        responseHeaders = new OutBoundHeaders();
+        responseHeaders.putSingle("Content-Type", MediaType.APPLICATION_JSON_TYPE);
+        responseHeaders.putSingle("Cache-Control", CacheControl.valueOf("max-age=60"));
+        responseHeaders.putSingle("ETag", "\"2a-5f3e\"");
+        responseHeaders.putSingle("Vary", "Accept-Encoding");
+        responseHeaders.putSingle("X-Request-Id", "3f2a9c");
+    }
+
+    /**
+     * Jersey 匹配资源方法和选择 MessageBodyReader/Writer 时读取的请求头
+     */
+    @Benchmark
+    public void readRequestHeaders(Blackhole bh) {
+        JerseyRequestHeadersAdapter headers = new JerseyRequestHeadersAdapter(requestHeaders);
+        bh.consume(headers.getFirst("Content-Type"));
+        bh.consume(headers.get("Accept"));
+        bh.consume(headers.get("Accept-Language"));
+        bh.consume(headers.get("If-None-Match"));
+        bh.consume(headers.containsKey("X-Jersey-Trace-Accept"));
+        bh.consume(headers.get("Cookie"));
+    }
+
+    @Benchmark
+    public void iterateRequestHeaders(Blackhole bh) {
+        JerseyRequestHeadersAdapter headers = new JerseyRequestHeadersAdapter(requestHeaders);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            bh.consume(header.getKey());
+            bh.consume(header.getValue());
+        }
+    }
+
+    @Benchmark
+    public HttpHeaders writeResponseHeaders() {
+        HttpHeaders target = new DefaultHttpHeaders();
+        NettyResponseWriter.writeHeaders(target, responseHeaders.entrySet());
+        return target;
+    }
+}
@@ -0,0 +1,115 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求体输入流在并发负载下的吞吐：生产方固定在少量 "event loop" 线程上投递 chunk，
+ * 多个读线程同时逐字节或批量读取，对比无锁 SPSC 实现与原先的加锁实现。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar HttpContentInputStreamBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class HttpContentInputStreamBenchmark {
+
+    @Param({"spsc", "locking"})
+    String impl;
+
+    @Param({"byte", "bulk"})
+    String reader;
+
+    @Param({"256", "1024", "16384"})
+    int chunkSize;
+
+    @Param({"65536"})
+    int bodySize;
+
+    private Scheduler eventLoops;
+    private List<ByteBuf> chunks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        eventLoops = Schedulers.newParallel("bench-event-loop", 2);
+        chunks = new ArrayList<>();
+        for (int written = 0; written < bodySize; written += chunkSize) {
+            ByteBuf chunk = Unpooled.directBuffer(chunkSize);
+            chunk.writeZero(Math.min(chunkSize, bodySize - written));
+            chunks.add(chunk);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventLoops.dispose();
+        chunks.forEach(ByteBuf::release);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        //duplicate 共享引用计数，与 reactor-netty 交给订阅者的 chunk 一样，读完后引用计数回到原值
+        Flux<ByteBuf> content = Flux.fromIterable(chunks)
+                .map(ByteBuf::duplicate)
+                .subscribeOn(eventLoops);
+        InputStream in = "spsc".equals(impl)
+                ? new HttpContentInputStream(PooledByteBufAllocator.DEFAULT, content)
+                : new LockingContentInputStream(PooledByteBufAllocator.DEFAULT, content);
+        try {
+            return "byte".equals(reader) ? readBytes(in) : readBulk(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long readBytes(InputStream in) throws IOException {
+        long sum = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            sum += b;
+        }
+        return sum;
+    }
+
+    private static long readBulk(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+            total += n;
+        }
+        return total;
+    }
+}
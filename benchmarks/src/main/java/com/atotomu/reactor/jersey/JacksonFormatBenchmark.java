@@ -0,0 +1,99 @@
+package com.atotomu.reactor.jersey;
+
+import com.atotomu.reactor.jersey.bench.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一个 List&lt;User&gt; 分别用 JSON、Smile、CBOR 读写的吞吐和分配，编码后的大小在 setup 时打印。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar JacksonFormatBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JacksonFormatBenchmark {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"1", "100"})
+    int items;
+
+    private JacksonProvider provider;
+    private MediaType mediaType;
+    private List<User> value;
+    private Type genericType;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("smile".equals(format)) {
+            provider = new JacksonSmileProvider();
+            mediaType = JacksonSmileProvider.APPLICATION_SMILE_TYPE;
+        } else if ("cbor".equals(format)) {
+            provider = new JacksonCborProvider();
+            mediaType = JacksonCborProvider.APPLICATION_CBOR_TYPE;
+        } else {
+            provider = new JacksonProvider();
+            mediaType = MediaType.APPLICATION_JSON_TYPE;
+        }
+        value = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            value.add(new User("user-" + i, i, "first-" + i));
+        }
+        genericType = new TypeReference<List<User>>() {
+        }.getType();
+        encoded = write().toByteArray();
+        System.out.println();
+        System.out.println(format + " payload of " + items + " users: " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        return write().size();
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return provider.readFrom(Object.class, genericType, NO_ANNOTATIONS, mediaType, null, new ByteArrayInputStream(encoded));
+    }
+
+    private ByteArrayOutputStream write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * items);
+        provider.writeTo(value, List.class, genericType, NO_ANNOTATIONS, mediaType, null, out);
+        return out;
+    }
+}
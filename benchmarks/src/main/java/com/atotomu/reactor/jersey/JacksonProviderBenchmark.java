@@ -0,0 +1,132 @@
+package com.atotomu.reactor.jersey;
+
+import com.atotomu.reactor.jersey.bench.User;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JacksonProvider} 读写和测试里 UserTest 形状相同的小实体：单个 {@link User} 和 List&lt;User&gt;，
+ * 对比缓存 ObjectReader/ObjectWriter 和原来每次 constructType + writerFor 的做法，小实体上这部分固定开销占比最大。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar JacksonProviderBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JacksonProviderBenchmark {
+
+    @Param({"cached", "uncached"})
+    String impl;
+
+    @Param({"single", "list"})
+    String payload;
+
+    @Param({"4"})
+    int items;
+
+    private JacksonProvider provider;
+    private ObjectMapper mapper;
+    private Object value;
+    private Class<?> type;
+    private Type genericType;
+    private Annotation[] annotations;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        provider = new JacksonProvider();
+        mapper = provider.mapper;
+        if ("single".equals(payload)) {
+            value = new User("name-0", 0, "first-0");
+            type = User.class;
+            genericType = User.class;
+        } else {
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < items; i++) {
+                users.add(new User("name-" + i, i, "first-" + i));
+            }
+            value = users;
+            type = List.class;
+            genericType = new TypeReference<List<User>>() {
+            }.getType();
+        }
+        annotations = JacksonProviderBenchmark.class.getDeclaredMethod("resource").getAnnotations();
+        json = mapper.writeValueAsBytes(value);
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    void resource() {
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        if ("cached".equals(impl)) {
+            provider.writeTo(value, type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE, null, out);
+        } else {
+            writeUncached(mapper, value, genericType, out);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        InputStream in = new ByteArrayInputStream(json);
+        if ("cached".equals(impl)) {
+            return provider.readFrom(Object.class, genericType, annotations, MediaType.APPLICATION_JSON_TYPE, null, in);
+        }
+        JsonParser jp = mapper.getFactory().createParser(in);
+        jp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return mapper.readValue(jp, mapper.constructType(genericType));
+    }
+
+    /**
+     * 1.0 版本的写出路径（不含 JsonView/JSONP 分支）
+     */
+    private static void writeUncached(ObjectMapper mapper, Object value, Type genericType, OutputStream out) throws IOException {
+        JsonGenerator jg = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        jg.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        JavaType rootType = mapper.getTypeFactory().constructType(genericType);
+        mapper.writerFor(rootType).writeValue(jg, value);
+    }
+}
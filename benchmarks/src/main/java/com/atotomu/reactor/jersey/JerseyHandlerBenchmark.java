@@ -0,0 +1,106 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.http.server.EmbeddedHttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个请求完整经过 {@link JerseyBasedHandler#apply}：请求字节写进 EmbeddedChannel，经过 reactor-netty 的
+ * HttpServerCodec/HttpServerHandler、桥接层、Jersey 和 {@link JacksonProvider}，直到响应编码成字节，没有 socket 开销。
+ * inline 是 {@link NonBlocking} 的 GET，worker 是交给工作线程的 GET，post 在工作线程上读一个 JSON 请求体。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar JerseyHandlerBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class JerseyHandlerBenchmark {
+
+    @Param({"inline", "worker", "post"})
+    String request;
+
+    private JerseyBasedHandler handler;
+    private EmbeddedChannel channel;
+    private ByteBuf requestBytes;
+    private final Semaphore completed = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.bench")
+                .build();
+        //handler 结束时响应已经写进 channel，工作线程上的请求也能等到
+        channel = EmbeddedHttpServer.newChannel((req, resp) ->
+                Mono.from(handler.apply(req, resp)).doFinally(signal -> completed.release()));
+        requestBytes = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(httpRequest(request), StandardCharsets.US_ASCII));
+    }
+
+    private static String httpRequest(String request) {
+        switch (request) {
+            case "inline":
+                return "GET /users/inline/42 HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n\r\n";
+            case "worker":
+                return "GET /users/42 HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n\r\n";
+            case "post":
+                String body = "{\"first_name\":\"first-42\",\"id\":42,\"name\":\"name-42\"}";
+                return "POST /users HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n"
+                        + "Content-Type: application/json\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+            default:
+                throw new IllegalArgumentException(request);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        handler.stop();
+    }
+
+    /**
+     * @return 响应的字节数
+     */
+    @Benchmark
+    public int apply() throws InterruptedException {
+        channel.writeInbound(requestBytes.duplicate());
+        completed.acquire();
+        //工作线程写响应时排进 event loop 的任务
+        channel.runPendingTasks();
+        int written = 0;
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            if (msg instanceof ByteBuf) {
+                written += ((ByteBuf) msg).readableBytes();
+            }
+            ReferenceCountUtil.release(msg);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,96 @@
+package com.atotomu.reactor.jersey;
+
+import com.atotomu.reactor.jersey.bench.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同 {@link JsonEngine} 读写 List&lt;User&gt; 的吞吐和分配，实体从 1 个到 1000 个。
+ * 两种实现的 JSON 内容相同，先在 setup 里互相校验。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar JsonEngineBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JsonEngineBenchmark {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"jackson", "fastjson"})
+    String engine;
+
+    @Param({"1", "10", "100", "1000"})
+    int items;
+
+    private JsonEngine jsonEngine;
+    private List<User> value;
+    private Type genericType;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        jsonEngine = "fastjson".equals(engine) ? new FastjsonEngine() : new JacksonJsonEngine();
+        value = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            value.add(new User("user-" + i, i, "first-" + i));
+        }
+        genericType = new TypeReference<List<User>>() {
+        }.getType();
+        json = write(new JacksonJsonEngine());
+        byte[] written = write(jsonEngine);
+        if (!new String(written, "UTF-8").equals(new String(json, "UTF-8"))) {
+            throw new IllegalStateException(engine + " writes " + new String(written, "UTF-8"));
+        }
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        return write(jsonEngine).length;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object read() throws IOException {
+        List<User> users = (List<User>) jsonEngine.readFrom(Object.class, genericType, NO_ANNOTATIONS, new ByteArrayInputStream(json));
+        if (users.size() != items) {
+            throw new IllegalStateException();
+        }
+        return users;
+    }
+
+    private byte[] write(JsonEngine jsonEngine) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * items);
+        jsonEngine.writeTo(value, List.class, genericType, NO_ANNOTATIONS, out);
+        return out.toByteArray();
+    }
+}
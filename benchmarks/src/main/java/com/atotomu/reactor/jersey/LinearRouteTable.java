@@ -0,0 +1,35 @@
+package com.atotomu.reactor.jersey;
+
+import java.util.List;
+
+/**
+ * 1.0 版本逐个匹配所有路径模板的实现，仅作为 {@link RouteTable} 的基准对照。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class LinearRouteTable {
+
+    private final List<RouteTable.Route> routes;
+
+    public LinearRouteTable(List<RouteTable.Route> routes) {
+        this.routes = routes;
+    }
+
+    public boolean isNonBlocking(String method, String path) {
+        String normalized = RouteTable.normalize(path);
+        boolean matched = false;
+        for (RouteTable.Route route : routes) {
+            if (route.httpMethod != null && !route.httpMethod.equals(method)) {
+                continue;
+            }
+            if (route.template.getPattern().match(normalized) != null) {
+                if (!route.nonBlocking) {
+                    return false;
+                }
+                matched = true;
+            }
+        }
+        return matched;
+    }
+}
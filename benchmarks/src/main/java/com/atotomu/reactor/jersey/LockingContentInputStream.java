@@ -0,0 +1,108 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 1.0 版本基于 ReentrantLock + Condition 的 {@link HttpContentInputStream} 实现，仅作为基准对照。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class LockingContentInputStream extends InputStream {
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition contentAvailabilityMonitor = lock.newCondition();
+    private final ByteBuf contentBuffer;
+    private volatile boolean isCompleted = false;
+    private volatile Throwable completedWithError = null;
+
+    public LockingContentInputStream(final ByteBufAllocator allocator, final Flux<ByteBuf> content) {
+        contentBuffer = allocator.buffer();
+        content.subscribe(byteBuf -> {
+                    lock.lock();
+                    try {
+                        if (byteBuf.readableBytes() > 0) {
+                            contentBuffer.writeBytes(byteBuf);
+                        }
+                        contentAvailabilityMonitor.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                },
+                throwable -> {
+                    lock.lock();
+                    try {
+                        completedWithError = throwable;
+                        isCompleted = true;
+                        contentAvailabilityMonitor.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                },
+                () -> {
+                    lock.lock();
+                    try {
+                        isCompleted = true;
+                        contentAvailabilityMonitor.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                });
+    }
+
+    @Override
+    public int read() throws IOException {
+        lock.lock();
+        try {
+            if (!await()) {
+                return -1;
+            }
+            return contentBuffer.readByte() & 0xff;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        lock.lock();
+        try {
+            if (!await()) {
+                return -1;
+            }
+            int size = Math.min(len, contentBuffer.readableBytes());
+            contentBuffer.readBytes(b, off, size);
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        contentBuffer.release();
+    }
+
+    private boolean await() throws IOException {
+        while (!isCompleted && !contentBuffer.isReadable()) {
+            try {
+                contentAvailabilityMonitor.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        if (completedWithError != null) {
+            throw new IOException(completedWithError);
+        }
+        return contentBuffer.isReadable();
+    }
+}
@@ -0,0 +1,76 @@
+package com.atotomu.reactor.jersey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由数量增加时每个请求查找资源方法的开销：1.0 逐个匹配所有模板（linear），前缀树只匹配路径前缀相同的模板（trie）。
+ * 每个服务有 4 个资源方法，请求均匀分布在所有服务上。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar RouteTableBenchmark -prof gc
+ * </pre>
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class RouteTableBenchmark {
+
+    @Param({"linear", "trie"})
+    public String impl;
+
+    @Param({"20", "2000"})
+    public int routes;
+
+    private LinearRouteTable linear;
+    private RouteTable trie;
+    private String[] paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<RouteTable.Route> table = new ArrayList<>();
+        int services = routes / 4;
+        paths = new String[services * 3];
+        for (int i = 0; i < services; i++) {
+            String base = "/service" + i + "/items";
+            table.add(new RouteTable.Route(base, "GET", true, false));
+            table.add(new RouteTable.Route(base, "POST", false, false));
+            table.add(new RouteTable.Route(base + "/{id: [0-9]+}", "GET", true, false));
+            table.add(new RouteTable.Route(base + "/{id: [0-9]+}/detail", "GET", false, false));
+            paths[i * 3] = base;
+            paths[i * 3 + 1] = base + "/" + i;
+            paths[i * 3 + 2] = base + "/" + i + "/detail";
+        }
+        linear = new LinearRouteTable(table);
+        trie = new RouteTable(table);
+    }
+
+    @Benchmark
+    public void isNonBlocking(Blackhole bh) {
+        String path = paths[next++ % paths.length];
+        bh.consume("linear".equals(impl) ? linear.isNonBlocking("GET", path) : trie.isNonBlocking("GET", path));
+    }
+}
@@ -0,0 +1,89 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.channel.ChannelOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.PoolResources;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大量并发慢请求下不同调度方式的完成时间：每个请求在资源方法里 sleep，
+ * 对比 elastic 平台线程池和每请求一个虚拟线程。
+ * <pre>
+ * # virtual 需要 JDK 21+，Jersey 1 的 JAXB 还需要 --add-opens
+ * java -jar benchmarks/target/benchmarks.jar SlowRequestDispatchBenchmark \
+ *      -jvmArgsAppend "--add-opens java.base/java.lang=ALL-UNNAMED" -prof gc
+ * </pre>
+ * 客户端和服务端都需要 2 * concurrency 个文件描述符，注意 ulimit -n。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SlowRequestDispatchBenchmark {
+
+    @Param({"elastic", "virtual"})
+    String mode;
+
+    @Param({"10000"})
+    int concurrency;
+
+    @Param({"200"})
+    int sleepMillis;
+
+    private JerseyBasedHandler handler;
+    private NettyContext server;
+    private HttpClient client;
+    private PoolResources pool;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.bench")
+                .withVirtualThreads("virtual".equals(mode))
+                .build();
+        server = HttpServer.create(o -> o.host("127.0.0.1").port(0).option(ChannelOption.SO_BACKLOG, concurrency))
+                .newHandler(handler)
+                .block();
+        pool = PoolResources.elastic("bench-client");
+        client = HttpClient.create(o -> o.host("127.0.0.1").port(server.address().getPort()).poolResources(pool));
+        uri = "/slow?ms=" + sleepMillis;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.dispose();
+        server.dispose();
+        handler.stop();
+    }
+
+    @Benchmark
+    public Long concurrentSlowRequests() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> client.get(uri).flatMap(response -> response.receive().aggregate().asString()), concurrency)
+                .count()
+                .block();
+    }
+}
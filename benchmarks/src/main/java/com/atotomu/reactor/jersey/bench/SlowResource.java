@@ -0,0 +1,22 @@
+package com.atotomu.reactor.jersey.bench;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+
+/**
+ * 模拟阻塞的下游调用
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Path("/slow")
+public class SlowResource {
+
+    @GET
+    public String get(@QueryParam("ms") @DefaultValue("100") long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return "slow";
+    }
+}
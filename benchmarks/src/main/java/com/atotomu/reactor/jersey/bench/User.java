@@ -0,0 +1,55 @@
+package com.atotomu.reactor.jersey.bench;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * 和测试里的 UserTest 字段相同，同时带上 Jackson 和 fastjson 的注解；fastjson 按字段名排序，Jackson 也按字母顺序输出，两种实现的输出一致
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@JsonPropertyOrder(alphabetic = true)
+public class User {
+    private String name;
+    private int id;
+    private String firstName;
+
+    public User() {
+    }
+
+    public User(String name, int id, String firstName) {
+        this.name = name;
+        this.id = id;
+        this.firstName = firstName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    @JsonProperty("first_name")
+    @JSONField(name = "first_name")
+    public String getFirstName() {
+        return firstName;
+    }
+
+    @JsonProperty("first_name")
+    @JSONField(name = "first_name")
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+}
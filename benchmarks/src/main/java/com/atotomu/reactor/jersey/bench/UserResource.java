@@ -0,0 +1,42 @@
+package com.atotomu.reactor.jersey.bench;
+
+import com.atotomu.reactor.jersey.NonBlocking;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * 读写和测试里 UserTest 形状相同的 {@link User}，GET 分别走 event loop 和工作线程
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Path("/users")
+@Produces(MediaType.APPLICATION_JSON)
+public class UserResource {
+
+    @GET
+    @Path("/{id}")
+    public User get(@PathParam("id") int id) {
+        return new User("name-" + id, id, "first-" + id);
+    }
+
+    @GET
+    @Path("/inline/{id}")
+    @NonBlocking
+    public User getInline(@PathParam("id") int id) {
+        return new User("name-" + id, id, "first-" + id);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public User post(User user) {
+        user.setId(user.getId() + 1);
+        return user;
+    }
+}
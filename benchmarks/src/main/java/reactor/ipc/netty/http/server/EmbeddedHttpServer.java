@@ -0,0 +1,47 @@
+package reactor.ipc.netty.http.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.channel.ContextHandler;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * 在 EmbeddedChannel 上搭出和 {@link HttpServer} 相同的 pipeline（HttpServerCodec + HttpServerHandler），
+ * 不经过 socket 就能把请求字节交给 handler。HttpServerOperations 的创建是包内可见的，所以放在 reactor-netty 的包里
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public final class EmbeddedHttpServer {
+
+    private EmbeddedHttpServer() {
+    }
+
+    /**
+     * @param handler 和 {@link HttpServer#newHandler(BiFunction)} 的参数相同
+     * @return 已经激活的连接，writeInbound 写入请求字节，readOutbound 读出响应
+     */
+    public static EmbeddedChannel newChannel(
+            BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler) {
+        AtomicReference<MonoSink<NettyContext>> sink = new AtomicReference<>();
+        Mono.<NettyContext>create(sink::set).subscribe();
+        ContextHandler<Channel> context = ContextHandler.newServerContext(sink.get(), HttpServerOptions.builder().build(), null,
+                (channel, c, msg) -> HttpServerOperations.bindHttp(channel, handler, c, msg))
+                .onPipeline((pipeline, c) -> pipeline
+                        .addLast(NettyPipeline.HttpCodec, new HttpServerCodec())
+                        .addLast(NettyPipeline.HttpServerHandler, new HttpServerHandler(c)))
+                .autoCreateOperations(false);
+        EmbeddedChannel channel = new EmbeddedChannel(context);
+        //响应结束时通过绑定的 future 判断服务器是否还在，没有 server channel 就用连接自己代替
+        context.setFuture(channel.newSucceededFuture());
+        return channel;
+    }
+}
@@ -0,0 +1,296 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * 支持资源方法返回 {@link Mono}、{@link Flux}、{@link CompletionStage}：
+ * 作为最后一个响应过滤器，把异步结果换成空响应交给一个不输出的 writer，让 Jersey 立即返回、释放工作线程；
+ * 结果产生后在处理请求的工作线程池上恢复原来的 writer，由注册的 MessageBodyWriter 序列化后写出：
+ * 结果可能在其他连接的 event loop 上产生，而写大响应时需要等待 netty 的需求，不能在 event loop 上进行。
+ * <p>
+ * Flux 收集成 List 后作为一个实体写出；如果 @Produces 是 text/event-stream 或 application/x-ndjson，
+ * 则每个元素单独序列化并立即发送，见 {@link StreamFormat}。结果为空时返回 204，出错时按 Jersey 的 ExceptionMapper 映射。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class AsyncResponseFilter implements ContainerResponseFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncResponseFilter.class);
+
+    private final Scheduler scheduler;
+
+    /**
+     * @param scheduler 写出异步结果的线程，和处理请求的工作线程相同
+     */
+    AsyncResponseFilter(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        Object entity = response.getEntity();
+        if (!(entity instanceof Publisher || entity instanceof CompletionStage)
+                || !(response.getContainerResponseWriter() instanceof NettyResponseWriter)) {
+            return response;
+        }
+        NettyResponseWriter writer = (NettyResponseWriter) response.getContainerResponseWriter();
+        Type elementType = elementType(response.getEntityType());
+        MultivaluedMap<String, Object> headers = response.getHttpHeaders();
+        StreamFormat format = entity instanceof Mono ? null : StreamFormat.of(headers.getFirst(HttpHeaders.CONTENT_TYPE));
+        if (format == StreamFormat.SERVER_SENT_EVENTS && !headers.containsKey(HttpHeaders.CACHE_CONTROL)) {
+            headers.putSingle(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+        int status = response.getStatus();
+        List<Map.Entry<String, List<Object>>> savedHeaders = new ArrayList<>(headers.size());
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            savedHeaders.add(new AbstractMap.SimpleImmutableEntry<>(header.getKey(), new ArrayList<>(header.getValue())));
+        }
+        writer.suspend();
+        if (format != null && entity instanceof Publisher) {
+            Flux<ByteBuf> content = Flux.from((Publisher<?>) entity)
+                    .map(new ElementEncoder(request.getMessageBodyWorkers(), response.getAnnotations(), elementType,
+                            format, writer.alloc()))
+                    .doOnError(e -> logger.error("Streaming response failed, closing the connection.", e));
+            response.setContainerResponseWriter(new SuspendedWriter(() -> {
+                writer.stream(status, savedHeaders, content);
+                writer.resume();
+            }));
+            response.setEntity(null);
+            return response;
+        }
+
+        Mono<?> result;
+        if (entity instanceof Mono) {
+            result = (Mono<?>) entity;
+        } else if (entity instanceof CompletionStage) {
+            result = Mono.fromFuture(((CompletionStage<?>) entity).toCompletableFuture());
+        } else {
+            result = Flux.from((Publisher<?>) entity).collectList();
+            elementType = new ListType(elementType);
+        }
+        Type type = elementType;
+        Mono<Optional<Object>> optional = result.map(Optional::<Object>of).defaultIfEmpty(Optional.empty())
+                .publishOn(scheduler);
+        //Jersey 写完空响应之后才订阅，避免结果在其他线程上产生时和 Jersey 同时修改 response
+        response.setContainerResponseWriter(new SuspendedWriter(() -> writer.pendingResult(optional.subscribe(
+                value -> resume(response, writer, status, savedHeaders, value.orElse(null), type),
+                error -> fail(response, writer, error)))));
+        response.setEntity(null);
+        return response;
+    }
+
+    private static void resume(ContainerResponse response, NettyResponseWriter writer, int status,
+                               List<Map.Entry<String, List<Object>>> headers, Object value, Type type) {
+        Response.ResponseBuilder builder = value == null && status == Response.Status.OK.getStatusCode()
+                ? Response.noContent() : Response.status(status);
+        for (Map.Entry<String, List<Object>> header : headers) {
+            for (Object headerValue : header.getValue()) {
+                builder.header(header.getKey(), headerValue);
+            }
+        }
+        if (value != null) {
+            builder.entity(new GenericEntity<>(value, type));
+        }
+        response.setContainerResponseWriter(writer);
+        //setResponse 会重置 committed 状态，可以再写一次
+        response.setResponse(builder.build());
+        write(response, writer);
+    }
+
+    private static void fail(ContainerResponse response, NettyResponseWriter writer, Throwable error) {
+        response.setContainerResponseWriter(writer);
+        try {
+            if (error instanceof WebApplicationException) {
+                response.mapWebApplicationException((WebApplicationException) error);
+            } else if (!response.mapException(error)) {
+                logger.error("Async resource method failed.", error);
+                response.setResponse(Response.serverError().build());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to map async error.", e);
+            writer.abort(e);
+            return;
+        }
+        write(response, writer);
+    }
+
+    private static void write(ContainerResponse response, NettyResponseWriter writer) {
+        try {
+            response.write();
+            writer.resume();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write async response.", e);
+            writer.abort(e);
+        }
+    }
+
+    /**
+     * Mono&lt;T&gt; 之类的返回类型取出 T，拿不到泛型参数时退化为 Object
+     */
+    static Type elementType(Type type) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (arguments.length == 1) {
+                return arguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * 流式响应的每个元素用 application/json 的 MessageBodyWriter（通常是 {@link JacksonProvider}）序列化，
+     * 加上格式要求的前后缀后成为一个 ByteBuf。元素之间不能有换行，所以 ObjectMapper 不能开启缩进输出
+     */
+    private static final class ElementEncoder implements Function<Object, ByteBuf> {
+        private static final MultivaluedMap<String, Object> NO_HEADERS = new OutBoundHeaders();
+
+        private final MessageBodyWorkers workers;
+        private final Annotation[] annotations;
+        private final Type elementType;
+        private final StreamFormat format;
+        private final ByteBufAllocator alloc;
+        //Flux 的 onNext 是串行的，元素类型通常都一样，只记住上一个
+        private Class<?> lastType;
+        private MessageBodyWriter<Object> lastWriter;
+
+        ElementEncoder(MessageBodyWorkers workers, Annotation[] annotations, Type elementType, StreamFormat format,
+                       ByteBufAllocator alloc) {
+            this.workers = workers;
+            this.annotations = annotations;
+            this.elementType = elementType;
+            this.format = format;
+            this.alloc = alloc;
+        }
+
+        @Override
+        public ByteBuf apply(Object element) {
+            Class<?> type = element.getClass();
+            Type genericType = elementType == Object.class ? type : elementType;
+            MessageBodyWriter<Object> writer = writer(type, genericType);
+            ByteBuf buffer = alloc.buffer();
+            try (ByteBufOutputStream out = new ByteBufOutputStream(buffer)) {
+                out.write(format.prefix);
+                writer.writeTo(element, type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE, NO_HEADERS, out);
+                out.write(format.suffix);
+            } catch (IOException | RuntimeException e) {
+                buffer.release();
+                throw Exceptions.propagate(e);
+            }
+            return buffer;
+        }
+
+        @SuppressWarnings("unchecked")
+        private MessageBodyWriter<Object> writer(Class<?> type, Type genericType) {
+            if (type != lastType) {
+                MessageBodyWriter<?> writer = workers.getMessageBodyWriter(type, genericType, annotations,
+                        MediaType.APPLICATION_JSON_TYPE);
+                if (writer == null) {
+                    throw new IllegalStateException("No application/json MessageBodyWriter for " + genericType);
+                }
+                lastWriter = (MessageBodyWriter<Object>) writer;
+                lastType = type;
+            }
+            return lastWriter;
+        }
+    }
+
+    /**
+     * 挂起期间 Jersey 写出的空响应被丢弃，写完时开始订阅异步结果
+     */
+    private static final class SuspendedWriter implements ContainerResponseWriter {
+        private final Runnable onFinish;
+
+        SuspendedWriter(Runnable onFinish) {
+            this.onFinish = onFinish;
+        }
+
+        @Override
+        public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) {
+            return null;
+        }
+
+        @Override
+        public void finish() {
+            onFinish.run();
+        }
+    }
+
+    static final class ListType implements ParameterizedType {
+        private final Type element;
+
+        ListType(Type element) {
+            this.element = element;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return new Type[]{element};
+        }
+
+        @Override
+        public Type getRawType() {
+            return List.class;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType that = (ParameterizedType) o;
+            return that.getRawType() == List.class && that.getOwnerType() == null
+                    && Arrays.equals(that.getActualTypeArguments(), getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(getActualTypeArguments()) ^ List.class.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "java.util.List<" + element.getTypeName() + ">";
+        }
+    }
+}
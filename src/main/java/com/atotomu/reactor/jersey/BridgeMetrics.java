@@ -0,0 +1,113 @@
+package com.atotomu.reactor.jersey;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.graphite.Graphite;
+import com.codahale.metrics.graphite.GraphiteReporter;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JerseyBasedHandler} 整个请求处理过程的指标，名字以 JerseyBasedHandler 的类名开头：
+ * <ul>
+ * <li>requests: 从收到请求到响应写出的耗时，包括缓存命中、合并的请求</li>
+ * <li>active-requests: 正在处理的请求数</li>
+ * <li>responses.1xx ~ responses.5xx: 按状态码分类的响应速率，errors: 以异常结束的请求速率</li>
+ * <li>request-size、response-size: 交给 Jersey 的请求体、Jersey 写出的响应体字节数（压缩前）</li>
+ * <li>queue-wait: 请求在工作线程池或 disruptor 里排队的时间</li>
+ * </ul>
+ * 资源方法的指标见 {@link MetricsDispatchAdapter}
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class BridgeMetrics {
+
+    private final Timer requests;
+    private final Counter activeRequests;
+    private final Meter[] responses;
+    private final Meter errors;
+    private final Histogram requestSize;
+    private final Histogram responseSize;
+    private final Timer queueWait;
+
+    BridgeMetrics(MetricRegistry registry) {
+        requests = registry.timer(name("requests"));
+        activeRequests = registry.counter(name("active-requests"));
+        responses = new Meter[]{
+                registry.meter(name("responses", "1xx")),
+                registry.meter(name("responses", "2xx")),
+                registry.meter(name("responses", "3xx")),
+                registry.meter(name("responses", "4xx")),
+                registry.meter(name("responses", "5xx"))
+        };
+        errors = registry.meter(name("errors"));
+        requestSize = registry.histogram(name("request-size"));
+        responseSize = registry.histogram(name("response-size"));
+        queueWait = registry.timer(name("queue-wait"));
+    }
+
+    private static String name(String... names) {
+        return MetricRegistry.name(JerseyBasedHandler.class, names);
+    }
+
+    /**
+     * @return 请求开始的时间，结束时交给 {@link #end(long, int, boolean)}
+     */
+    long begin() {
+        activeRequests.inc();
+        return System.nanoTime();
+    }
+
+    /**
+     * @param status 发出的状态码
+     * @param failed 请求以异常结束
+     */
+    void end(long start, int status, boolean failed) {
+        requests.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        activeRequests.dec();
+        int statusClass = status / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            responses[statusClass - 1].mark();
+        }
+        if (failed) {
+            errors.mark();
+        }
+    }
+
+    void queued(long enqueuedNanos) {
+        queueWait.update(System.nanoTime() - enqueuedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void requestSize(long bytes) {
+        requestSize.update(bytes);
+    }
+
+    /**
+     * @param bytes 不知道大小时为 -1，不记录
+     */
+    void responseSize(long bytes) {
+        if (bytes >= 0) {
+            responseSize.update(bytes);
+        }
+    }
+
+    /**
+     * 用 plaintext 协议发送到 Graphite，调用方负责 start/stop
+     *
+     * @param prefix 所有指标名字的前缀，可以为 null
+     */
+    static GraphiteReporter graphiteReporter(MetricRegistry registry, InetSocketAddress address, String prefix) {
+        return GraphiteReporter.forRegistry(registry)
+                .prefixedWith(prefix)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .filter(MetricFilter.ALL)
+                .build(new Graphite(address));
+    }
+}
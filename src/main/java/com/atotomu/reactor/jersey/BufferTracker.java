@@ -0,0 +1,212 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 排查内存泄漏用的检测模式：记录桥接层持有的每一个 ByteBuf 属于哪个请求、哪个路由。
+ * 请求体的 chunk、响应的发送缓冲从分配（或 retain）开始记到账上，释放或者交给 netty 发送时销账，
+ * 请求结束后账上还有 refCnt 大于 0 的 ByteBuf 就是泄漏。
+ * <p>
+ * 每个请求都有同步开销，只在排查问题时开启。已经交给 netty 的 ByteBuf 由 netty 自己的
+ * {@link io.netty.util.ResourceLeakDetector} 负责
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class BufferTracker {
+
+    private final ByteBufAllocator allocator;
+    private final Set<Ledger> ledgers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final LongAdder trackedRequests = new LongAdder();
+
+    /**
+     * 统计 {@link ByteBufAllocator#DEFAULT} 的内存池
+     */
+    public BufferTracker() {
+        this(ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * @param allocator 服务器使用的分配器，是 {@link PooledByteBufAllocator} 时报告内存池的统计
+     */
+    public BufferTracker(ByteBufAllocator allocator) {
+        this.allocator = Preconditions.checkNotNull(allocator);
+    }
+
+    /**
+     * 请求开始时调用，请求结束时调用 {@link Ledger#close()}
+     *
+     * @param route 请求匹配的路由，用于归类
+     */
+    Ledger open(String route) {
+        trackedRequests.increment();
+        Ledger ledger = new Ledger(route);
+        ledgers.add(ledger);
+        return ledger;
+    }
+
+    public long getTrackedRequests() {
+        return trackedRequests.sum();
+    }
+
+    /**
+     * @return 所有请求（包括正在处理的）持有的还没有释放的 ByteBuf 数
+     */
+    public int getOutstandingBuffers() {
+        int outstanding = 0;
+        for (Ledger ledger : ledgers) {
+            outstanding += ledger.outstanding();
+        }
+        return outstanding;
+    }
+
+    /**
+     * @return 已经结束的请求没有释放的 ByteBuf 数
+     */
+    public int getLeakedBuffers() {
+        int leaked = 0;
+        for (int count : getLeakedBuffersByRoute().values()) {
+            leaked += count;
+        }
+        return leaked;
+    }
+
+    /**
+     * @return 按路由统计已经结束的请求没有释放的 ByteBuf 数
+     */
+    public Map<String, Integer> getLeakedBuffersByRoute() {
+        Map<String, Integer> leaked = new TreeMap<>();
+        for (Ledger ledger : ledgers) {
+            if (ledger.closed) {
+                int outstanding = ledger.outstanding();
+                if (outstanding > 0) {
+                    leaked.merge(ledger.route, outstanding, Integer::sum);
+                }
+            }
+        }
+        return leaked;
+    }
+
+    /**
+     * @return 泄漏的 ByteBuf 和内存池的当前状态，分配器不是内存池时只有泄漏的部分
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tracked requests: ").append(getTrackedRequests())
+                .append(", outstanding buffers: ").append(getOutstandingBuffers()).append('\n');
+        for (Ledger ledger : ledgers) {
+            if (ledger.closed) {
+                for (ByteBuf buf : ledger.snapshot()) {
+                    sb.append("  leaked ").append(ledger.route).append(": ").append(buf).append('\n');
+                }
+            }
+        }
+        if (allocator instanceof PooledByteBufAllocator) {
+            PooledByteBufAllocatorMetric metric = ((PooledByteBufAllocator) allocator).metric();
+            sb.append("used heap memory: ").append(metric.usedHeapMemory())
+                    .append(", used direct memory: ").append(metric.usedDirectMemory()).append('\n');
+            appendArenas(sb, "heap", metric.heapArenas());
+            appendArenas(sb, "direct", metric.directArenas());
+        }
+        return sb.toString();
+    }
+
+    private static void appendArenas(StringBuilder sb, String type, List<PoolArenaMetric> arenas) {
+        for (int i = 0; i < arenas.size(); i++) {
+            PoolArenaMetric arena = arenas.get(i);
+            sb.append("  ").append(type).append(" arena ").append(i)
+                    .append(": active allocations ").append(arena.numActiveAllocations())
+                    .append(", active bytes ").append(arena.numActiveBytes())
+                    .append(", allocations ").append(arena.numAllocations())
+                    .append(", deallocations ").append(arena.numDeallocations())
+                    .append(", thread caches ").append(arena.numThreadCaches()).append('\n');
+        }
+    }
+
+    /**
+     * 一个请求持有的 ByteBuf，event loop 和工作线程都会访问
+     */
+    final class Ledger {
+        private final String route;
+        private final Map<ByteBuf, Boolean> buffers = new IdentityHashMap<>();
+        private volatile boolean closed;
+
+        private Ledger(String route) {
+            this.route = route;
+        }
+
+        /**
+         * 分配或者 retain 了一个 ByteBuf，之后由桥接层负责释放
+         */
+        synchronized void acquired(ByteBuf buf) {
+            if (buf.capacity() == 0) {
+                //EMPTY_BUFFER 之类不占内存，也永远不会被释放
+                return;
+            }
+            if (buffers.put(buf, Boolean.TRUE) == null && closed && buffers.size() == 1) {
+                //请求已经结束，工作线程还在写
+                ledgers.add(this);
+            }
+        }
+
+        /**
+         * 释放了 ByteBuf，或者交给了 netty/编码器，不再由桥接层负责
+         */
+        synchronized void released(ByteBuf buf) {
+            if (buffers.remove(buf) != null && closed && buffers.isEmpty()) {
+                ledgers.remove(this);
+            }
+        }
+
+        /**
+         * 请求结束，账上没有 ByteBuf 时不再跟踪
+         */
+        synchronized void close() {
+            closed = true;
+            prune();
+            if (buffers.isEmpty()) {
+                ledgers.remove(this);
+            }
+        }
+
+        private synchronized int outstanding() {
+            prune();
+            if (closed && buffers.isEmpty()) {
+                ledgers.remove(this);
+            }
+            return buffers.size();
+        }
+
+        private synchronized List<ByteBuf> snapshot() {
+            prune();
+            return new ArrayList<>(buffers.keySet());
+        }
+
+        /**
+         * refCnt 为 0 的已经释放了，只是没有经过销账的路径
+         */
+        private void prune() {
+            for (Iterator<ByteBuf> it = buffers.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().refCnt() == 0) {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.atotomu.reactor.jersey;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * GET 资源方法的 200 响应在 {@link ResponseCache} 中缓存 maxAge 秒，优先于响应 Cache-Control 的 max-age；
+ * 响应的 Cache-Control 带 no-store/no-cache/private 时仍然不缓存。
+ * 不会写到响应头里，只影响服务端缓存；没有开启 {@link JerseyBasedHandler.Builder#withResponseCache(ResponseCache)} 时没有作用
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResponse {
+    /**
+     * 缓存的秒数
+     */
+    int maxAge();
+}
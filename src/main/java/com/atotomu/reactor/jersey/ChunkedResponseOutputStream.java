@@ -0,0 +1,445 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.Operators;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 响应体输出流：写满一个 chunk 就交给 netty 发送，不再把整个响应缓存在内存里。
+ * <p>
+ * 流本身是 netty 发送端订阅的 {@link Publisher}，netty 只在 channel 可写时才请求下一个 chunk，
+ * 没有需求时写线程 park，慢客户端因此会反压到 Jersey 的序列化过程。
+ * 整个响应不超过一个 chunk 时一次发送并带上 Content-Length；在 event loop 上写时不能等待，只缓冲到 finish 时一起发送。
+ * finish 不等待需求，最后一个 chunk 由写线程或 netty 的 request 谁先满足条件谁发送。
+ * <p>
+ * 可以压缩时在发送第一个 chunk 或 finish 时决定是否压缩：超过一个 chunk 或者长度不小于 minResponseSize 才压缩，
+ * 压缩后的响应按 chunked 发送，小响应压缩后带上压缩后的 Content-Length。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class ChunkedResponseOutputStream extends OutputStream implements Publisher<ByteBuf>, Subscription {
+
+    private static final AtomicLongFieldUpdater<ChunkedResponseOutputStream> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(ChunkedResponseOutputStream.class, "requested");
+    private static final AtomicIntegerFieldUpdater<ChunkedResponseOutputStream> SIGNALS =
+            AtomicIntegerFieldUpdater.newUpdater(ChunkedResponseOutputStream.class, "signals");
+    private static final AtomicIntegerFieldUpdater<ChunkedResponseOutputStream> TERMINATED =
+            AtomicIntegerFieldUpdater.newUpdater(ChunkedResponseOutputStream.class, "terminated");
+
+    private final HttpServerResponse serverResponse;
+    private final int chunkSize;
+    private final long contentLength;
+    private final boolean head;
+    private final ResponseCompression compression;
+    private final ResponseCompression.ContentEncoding encoding;
+    private final MonoProcessor<Void> completion = MonoProcessor.create();
+
+    private volatile Subscriber<? super ByteBuf> subscriber;
+    private volatile long requested;
+    private volatile boolean cancelled;
+    private volatile int signals;
+    private volatile Thread waiter;
+    /**
+     * finish 之后剩下的最后一个 chunk，没有剩余数据时为 EMPTY_BUFFER
+     */
+    private volatile ByteBuf last;
+    private volatile int terminated;
+
+    private ByteBuf buffer;
+    private ResponseEncoder encoder;
+    private ResponseRecorder recorder;
+    private BufferTracker.Ledger ledger;
+    private boolean started;
+    private boolean finished;
+    /**
+     * Jersey 写入的字节数，压缩之前
+     */
+    private long written;
+
+    /**
+     * @param serverResponse 状态和响应头已经设置好的响应
+     * @param chunkSize      每个 chunk 的大小
+     * @param contentLength  Jersey 给出的长度，未知为 -1
+     */
+    ChunkedResponseOutputStream(HttpServerResponse serverResponse, int chunkSize, long contentLength) {
+        this(serverResponse, chunkSize, contentLength, false, null, null);
+    }
+
+    /**
+     * @param head        HEAD 请求，没有响应体，长度未知时不能按写入的数据设置 Content-Length
+     * @param compression 可以压缩时不为 null
+     * @param encoding    客户端接受的编码，不压缩时为 null
+     */
+    ChunkedResponseOutputStream(HttpServerResponse serverResponse, int chunkSize, long contentLength, boolean head,
+                                ResponseCompression compression, ResponseCompression.ContentEncoding encoding) {
+        this.serverResponse = serverResponse;
+        this.chunkSize = chunkSize;
+        this.contentLength = contentLength;
+        this.head = head;
+        this.compression = encoding != null ? compression : null;
+        this.encoding = encoding;
+    }
+
+    /**
+     * 发送的每个 chunk（压缩后的）都复制给 recorder，在写入之前调用
+     */
+    void recordTo(ResponseRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * 记录这个流持有的发送缓冲，在写入之前调用，见 {@link BufferTracker}
+     */
+    void trackBuffersWith(BufferTracker.Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * 在写入的线程上，或者 {@link #completion()} 之后调用
+     */
+    long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureBuffer();
+        buffer.writeByte(b);
+        written++;
+        emitIfFull();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException("Null buffer");
+        }
+        if (len < 0 || off < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException("Invalid index");
+        }
+        written += len;
+        while (len > 0) {
+            ensureBuffer();
+            int room = chunkSize - buffer.readableBytes();
+            int size = room > 0 ? Math.min(len, room) : len;
+            buffer.writeBytes(b, off, size);
+            off += size;
+            len -= size;
+            emitIfFull();
+        }
+    }
+
+    /**
+     * 不会立即发送，避免 JsonGenerator 的 flush 把小响应拆成 chunked，chunk 满了或 finish 时才发送
+     */
+    @Override
+    public void flush() throws IOException {
+        checkCancelled();
+    }
+
+    /**
+     * 由 {@link #finish()} 结束响应，Jersey 不会调用 close
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 发送剩余的数据并结束响应，不会等待 netty 的需求
+     *
+     * @return 响应全部写出后完成
+     */
+    Mono<Void> finish() throws IOException {
+        if (finished) {
+            return completion;
+        }
+        finished = true;
+        if (!started) {
+            ByteBuf content = buffer != null ? buffer : Unpooled.EMPTY_BUFFER;
+            buffer = null;
+            untrack(content);
+            if (compression != null && content.readableBytes() >= compression.getMinResponseSize()) {
+                startEncoding();
+                content = encoder.finish(content);
+                serverResponse.header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(content.readableBytes()));
+            } else if (!serverResponse.hasSentHeaders() && (contentLength >= 0 || !head)) {
+                //没有 Content-Length 时 reactor-netty 会在响应结束后关闭连接
+                serverResponse.header(HttpHeaderNames.CONTENT_LENGTH,
+                        String.valueOf(contentLength >= 0 ? contentLength : content.readableBytes()));
+            }
+            if (recorder != null) {
+                recorder.record(content);
+                recorder.complete(serverResponse.status(), serverResponse.responseHeaders());
+            }
+            serverResponse.send(Mono.just(content)).then().subscribe(completion);
+            return completion;
+        }
+        checkCancelled();
+        ByteBuf remaining;
+        if (encoder != null) {
+            if (buffer != null) {
+                untrack(buffer);
+            }
+            remaining = encoder.finish(buffer != null ? buffer : Unpooled.EMPTY_BUFFER);
+            buffer = null;
+            track(remaining);
+        } else if (buffer != null && buffer.isReadable()) {
+            remaining = buffer;
+            buffer = null;
+        } else {
+            releaseBuffer();
+            remaining = Unpooled.EMPTY_BUFFER;
+        }
+        if (recorder != null) {
+            //赋值给 last 之后 netty 随时可能发送并释放
+            recorder.record(remaining);
+            recorder.complete(serverResponse.status(), serverResponse.responseHeaders());
+        }
+        last = remaining;
+        drainLast();
+        return completion;
+    }
+
+    /**
+     * @return 响应全部写出后完成，还没有调用 {@link #finish()} 时不会完成
+     */
+    Mono<Void> completion() {
+        return completion;
+    }
+
+    /**
+     * Jersey 处理失败时调用，已经开始发送的响应只能中断连接
+     */
+    void abort(Throwable error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        releaseBuffer();
+        if (encoder != null) {
+            encoder.close();
+        }
+        if (recorder != null) {
+            recorder.discard();
+        }
+        if (started && subscriber != null && TERMINATED.compareAndSet(this, 0, 1)) {
+            subscriber.onError(error);
+        } else {
+            completion.onError(error);
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuf> s) {
+        if (subscriber != null) {
+            Operators.error(s, new IllegalStateException("ChunkedResponseOutputStream allows only a single subscriber"));
+            return;
+        }
+        s.onSubscribe(this);
+        subscriber = s;
+        signal();
+    }
+
+    @Override
+    public void request(long n) {
+        if (Operators.validate(n)) {
+            Operators.addCap(REQUESTED, this, n);
+            signal();
+            if (last != null) {
+                drainLast();
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        signal();
+        if (last != null && TERMINATED.compareAndSet(this, 0, 1)) {
+            untrack(last);
+            ReferenceCountUtil.release(last);
+        }
+    }
+
+    private void ensureBuffer() throws IOException {
+        checkCancelled();
+        if (finished) {
+            throw new IOException("Response already finished");
+        }
+        if (buffer == null) {
+            //压缩时 Deflater 直接读堆内存的数组
+            buffer = compression != null ? serverResponse.alloc().heapBuffer(chunkSize) : serverResponse.alloc().buffer(chunkSize);
+            track(buffer);
+        }
+    }
+
+    private void emitIfFull() throws IOException {
+        // event loop 上不能等待需求，只能继续缓冲
+        if (buffer.readableBytes() >= chunkSize && !inEventLoop()) {
+            emit();
+        }
+    }
+
+    private void emit() throws IOException {
+        ByteBuf chunk = buffer;
+        buffer = null;
+        untrack(chunk);
+        if (!started) {
+            started = true;
+            if (compression != null) {
+                startEncoding();
+                serverResponse.chunkedTransfer(true);
+            } else if (contentLength >= 0) {
+                serverResponse.header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(contentLength));
+            } else {
+                serverResponse.chunkedTransfer(true);
+            }
+            serverResponse.send(this).then().subscribe(completion);
+        }
+        if (encoder != null) {
+            chunk = encoder.encode(chunk);
+            //deflater 还在缓冲，没有可发送的数据
+            if (!chunk.isReadable()) {
+                chunk.release();
+                return;
+            }
+        }
+        try {
+            awaitDemand();
+        } catch (IOException e) {
+            ReferenceCountUtil.release(chunk);
+            throw e;
+        }
+        if (requested != Long.MAX_VALUE) {
+            REQUESTED.decrementAndGet(this);
+        }
+        if (recorder != null) {
+            recorder.record(chunk);
+        }
+        subscriber.onNext(chunk);
+    }
+
+    private void startEncoding() {
+        encoder = compression.newEncoder(encoding, serverResponse.alloc());
+        serverResponse.responseHeaders().remove(HttpHeaderNames.CONTENT_LENGTH);
+        serverResponse.header(HttpHeaderNames.CONTENT_ENCODING, encoder.contentEncoding());
+    }
+
+    /**
+     * 写线程在 finish 时和 netty 在 request 时都会尝试，只有拿到 terminated 的一方发送，之后写线程不再访问 subscriber
+     */
+    private void drainLast() {
+        ByteBuf chunk = last;
+        if (chunk.isReadable()) {
+            if (requested == 0 || terminated != 0 || !TERMINATED.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            untrack(chunk);
+            subscriber.onNext(chunk);
+        } else if (!TERMINATED.compareAndSet(this, 0, 1)) {
+            return;
+        } else {
+            //编码器结束时可能没有输出，空的 ByteBuf 同样需要释放
+            untrack(chunk);
+            chunk.release();
+        }
+        subscriber.onComplete();
+    }
+
+    private void awaitDemand() throws IOException {
+        for (; ; ) {
+            checkCancelled();
+            int observed = signals;
+            if (subscriber != null && requested > 0) {
+                return;
+            }
+            waiter = Thread.currentThread();
+            if (observed == signals) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IOException(new InterruptedException());
+            }
+        }
+    }
+
+    private void checkCancelled() throws IOException {
+        if (cancelled) {
+            releaseBuffer();
+            if (encoder != null) {
+                encoder.close();
+            }
+            if (recorder != null) {
+                recorder.discard();
+            }
+            throw new IOException("Connection closed by peer");
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            untrack(buffer);
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    private void track(ByteBuf buf) {
+        if (ledger != null) {
+            ledger.acquired(buf);
+        }
+    }
+
+    private void untrack(ByteBuf buf) {
+        if (ledger != null) {
+            ledger.released(buf);
+        }
+    }
+
+    private void signal() {
+        SIGNALS.incrementAndGet(this);
+        Thread t = waiter;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * 同一个 group 里其他连接的 event loop 也不能等待，例如异步结果在 HttpClient 的连接上产生
+     */
+    private boolean inEventLoop() {
+        EventLoop eventLoop = serverResponse.context().channel().eventLoop();
+        if (eventLoop.inEventLoop()) {
+            return true;
+        }
+        EventLoopGroup group = eventLoop.parent();
+        if (group != null) {
+            for (EventExecutor executor : group) {
+                if (executor.inEventLoop()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package com.atotomu.reactor.jersey;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记幂等的 GET 资源类或资源方法，同时到达的相同请求只执行一次，其它请求等待并返回同一个响应，见 {@link RequestCoalescer}。
+ * 没有开启 {@link JerseyBasedHandler.Builder#withRequestCoalescing(RequestCoalescer)} 时没有作用
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface CoalesceRequests {
+}
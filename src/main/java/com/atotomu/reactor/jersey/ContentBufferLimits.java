@@ -0,0 +1,124 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求体缓冲限制：
+ * <ul>
+ * <li>inMemoryThreshold 单个请求放在内存中的上限，超过后转存到 memory-mapped 临时文件</li>
+ * <li>memoryBudget 所有请求共享的内存预算，预算用完后新数据直接转存文件</li>
+ * <li>maxContentLength 请求体硬上限，超过直接返回 413</li>
+ * </ul>
+ * 同一个实例在所有请求之间共享。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class ContentBufferLimits {
+
+    /**
+     * 不限制内存，行为与之前一致
+     */
+    public static final ContentBufferLimits UNLIMITED = new ContentBufferLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int inMemoryThreshold;
+    private final long memoryBudget;
+    private final int maxContentLength;
+    private final Path spillDirectory;
+    private final AtomicLong memoryInUse = new AtomicLong();
+    private final AtomicLong spilledRequests = new AtomicLong();
+
+    public ContentBufferLimits(int inMemoryThreshold, long memoryBudget, int maxContentLength) {
+        this(inMemoryThreshold, memoryBudget, maxContentLength, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param inMemoryThreshold 单个请求内存上限（字节）
+     * @param memoryBudget      全局内存预算（字节）
+     * @param maxContentLength  请求体硬上限（字节），memory-mapped 文件的限制，不能超过 Integer.MAX_VALUE
+     * @param spillDirectory    临时文件目录
+     */
+    public ContentBufferLimits(int inMemoryThreshold, long memoryBudget, int maxContentLength, Path spillDirectory) {
+        Preconditions.checkArgument(inMemoryThreshold >= 0, "inMemoryThreshold must be >= 0");
+        Preconditions.checkArgument(memoryBudget >= 0, "memoryBudget must be >= 0");
+        Preconditions.checkArgument(maxContentLength >= 0, "maxContentLength must be >= 0");
+        this.inMemoryThreshold = inMemoryThreshold;
+        this.memoryBudget = memoryBudget;
+        this.maxContentLength = maxContentLength;
+        this.spillDirectory = Preconditions.checkNotNull(spillDirectory);
+    }
+
+    public int getInMemoryThreshold() {
+        return inMemoryThreshold;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @return 当前所有请求占用的内存（字节）
+     */
+    public long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    /**
+     * @return 转存到临时文件的请求总数
+     */
+    public long getSpilledRequests() {
+        return spilledRequests.get();
+    }
+
+    /**
+     * 根据 Content-Length 提前判断，避免开始缓冲后才拒绝
+     */
+    boolean exceedsMaxContentLength(HttpHeaders headers) {
+        String contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(contentLength.trim()) > maxContentLength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    boolean reserve(int bytes) {
+        for (; ; ) {
+            long current = memoryInUse.get();
+            long next = current + bytes;
+            if (next > memoryBudget) {
+                return false;
+            }
+            if (memoryInUse.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    void release(long bytes) {
+        if (bytes > 0) {
+            memoryInUse.addAndGet(-bytes);
+        }
+    }
+
+    void spilled() {
+        spilledRequests.incrementAndGet();
+    }
+}
@@ -0,0 +1,228 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.sun.jersey.spi.container.ContainerRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.MonoSink;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 disruptor 的请求分发：event loop 把桥接好的请求写入预分配的 ring buffer，固定数量的处理线程消费。
+ * 相比 Mono.create(...).subscribeOn(...) 每个请求不再创建调度任务，交接只是一次序号 CAS。
+ * ring buffer 满时立即拒绝，返回 503；关闭时先处理完 ring buffer 里的请求，超时没有处理的请求返回 503。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class DisruptorDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(DisruptorDispatcher.class);
+
+    private static final RequestRejectedException RING_FULL = new RequestRejectedException("Request ring buffer is full");
+
+    private static final RequestRejectedException SHUT_DOWN = new RequestRejectedException("Request dispatcher is shut down");
+
+    static {
+        RING_FULL.setStackTrace(new StackTraceElement[0]);
+        SHUT_DOWN.setStackTrace(new StackTraceElement[0]);
+    }
+
+    private final int ringSize;
+    private final int threads;
+    private final WaitStrategy waitStrategy;
+    private final int retryAfterSeconds;
+    private final LongAdder rejectedRequests = new LongAdder();
+    private Disruptor<RequestEvent> disruptor;
+    private volatile RingBuffer<RequestEvent> ringBuffer;
+    private volatile boolean shutdown;
+
+    public DisruptorDispatcher(int ringSize, int threads) {
+        this(ringSize, threads, new BlockingWaitStrategy(), 1);
+    }
+
+    /**
+     * @param ringSize          ring buffer 大小，必须是 2 的幂，也就是最多排队的请求数
+     * @param threads           处理线程数
+     * @param waitStrategy      处理线程等待新请求的策略，低延迟可以用 YieldingWaitStrategy/BusySpinWaitStrategy，代价是 CPU
+     * @param retryAfterSeconds 503 响应的 Retry-After（秒）
+     */
+    public DisruptorDispatcher(int ringSize, int threads, WaitStrategy waitStrategy, int retryAfterSeconds) {
+        Preconditions.checkArgument(Integer.bitCount(ringSize) == 1, "ringSize must be a power of 2");
+        Preconditions.checkArgument(threads > 0, "threads must be > 0");
+        Preconditions.checkArgument(retryAfterSeconds >= 0, "retryAfterSeconds must be >= 0");
+        this.ringSize = ringSize;
+        this.threads = threads;
+        this.waitStrategy = Preconditions.checkNotNull(waitStrategy);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    synchronized void start(RequestProcessor processor) {
+        Preconditions.checkState(disruptor == null, "DisruptorDispatcher is already started");
+        disruptor = new Disruptor<>(RequestEvent::new, ringSize,
+                new ThreadFactoryBuilder().setNameFormat("jersey-disruptor-%d").setDaemon(true).build(),
+                ProducerType.MULTI, waitStrategy);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        WorkHandler<RequestEvent>[] handlers = new WorkHandler[threads];
+        for (int i = 0; i < threads; i++) {
+            handlers[i] = event -> {
+                MonoSink<Void> sink = event.take();
+                if (sink == null) {
+                    //关闭时已经拒绝
+                    return;
+                }
+                try {
+                    processor.process(event.request, event.writer, event.requestData, sink, event.enqueuedNanos);
+                } finally {
+                    event.clear();
+                }
+            };
+        }
+        disruptor.handleEventsWithWorkerPool(handlers);
+        disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler());
+        ringBuffer = disruptor.start();
+    }
+
+    /**
+     * 在 event loop 上调用，ring buffer 满或者已经关闭时 sink 以 {@link RequestRejectedException} 结束
+     */
+    void dispatch(ContainerRequest request, NettyResponseWriter writer, InputStream requestData, MonoSink<Void> sink) {
+        if (shutdown) {
+            sink.error(SHUT_DOWN);
+            return;
+        }
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            rejectedRequests.increment();
+            sink.error(RING_FULL);
+            return;
+        }
+        RequestEvent event = ringBuffer.get(sequence);
+        event.request = request;
+        event.writer = writer;
+        event.requestData = requestData;
+        event.enqueuedNanos = System.nanoTime();
+        event.sink.set(sink);
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * 最多等待 10 秒处理完 ring buffer 里的请求
+     */
+    void dispose() {
+        dispose(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 不再接收新的请求，等待处理线程处理完已经发布的请求后停止；超时还没有开始处理的请求以 {@link RequestRejectedException} 结束
+     */
+    synchronized void dispose(long timeout, TimeUnit unit) {
+        if (disruptor == null || shutdown) {
+            return;
+        }
+        shutdown = true;
+        try {
+            disruptor.shutdown(timeout, unit);
+        } catch (TimeoutException e) {
+            logger.warn("Timed out waiting for {} queued requests, rejecting them", getRingOccupancy());
+            disruptor.halt();
+        }
+        //超时没有处理的请求，以及和关闭同时发布的请求
+        for (int i = 0; i < ringSize; i++) {
+            RequestEvent event = ringBuffer.get(i);
+            MonoSink<Void> sink = event.take();
+            if (sink != null) {
+                event.clear();
+                sink.error(SHUT_DOWN);
+            }
+        }
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    /**
+     * @return 已经发布但还没有处理完的请求数
+     */
+    public long getRingOccupancy() {
+        RingBuffer<RequestEvent> ring = ringBuffer;
+        return ring == null ? 0 : ring.getBufferSize() - ring.remainingCapacity();
+    }
+
+    /**
+     * @return ring buffer 满时被拒绝的请求总数
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * 处理线程上执行的请求处理逻辑
+     */
+    interface RequestProcessor {
+        /**
+         * @param enqueuedNanos 发布到 ring buffer 的时间
+         */
+        void process(ContainerRequest request, NettyResponseWriter writer, InputStream requestData, MonoSink<Void> sink,
+                     long enqueuedNanos);
+    }
+
+    /**
+     * 预分配的 ring buffer 槽位，处理完后清空引用，避免请求对象一直留在 ring buffer 里。
+     * 处理线程和关闭时的清理都通过 {@link #take()} 取走 sink，只有取到的一方结束这个请求
+     */
+    private static final class RequestEvent {
+        ContainerRequest request;
+        NettyResponseWriter writer;
+        InputStream requestData;
+        final AtomicReference<MonoSink<Void>> sink = new AtomicReference<>();
+        long enqueuedNanos;
+
+        MonoSink<Void> take() {
+            return sink.getAndSet(null);
+        }
+
+        void clear() {
+            request = null;
+            writer = null;
+            requestData = null;
+        }
+    }
+
+    private static final class LoggingExceptionHandler implements ExceptionHandler<Object> {
+        @Override
+        public void handleEventException(Throwable ex, long sequence, Object event) {
+            logger.error("Failed to process request event " + sequence, ex);
+        }
+
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            logger.error("Failed to start request dispatcher", ex);
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            logger.error("Failed to stop request dispatcher", ex);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.atotomu.reactor.jersey;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.parser.DefaultJSONParser;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.parser.JSONReaderScanner;
+import com.alibaba.fastjson.parser.JSONToken;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.alibaba.fastjson.serializer.SerializeFilter;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.fasterxml.jackson.databind.type.ClassKey;
+import io.netty.buffer.ByteBuf;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于 fastjson 的 {@link JsonEngine}。fastjson 只识别自己的注解（例如 @JSONField），
+ * Jackson 的 @JsonProperty/@JsonView 等不会生效，切换前要确认输出格式一致。
+ * <p>
+ * fastjson 1.2.47 存在通过 java.lang.Class 绕过 autoType 检查的已知漏洞，这里使用独立的 ParserConfig
+ * 并禁止反序列化 java.lang.Class；仍然建议升级 fastjson。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class FastjsonEngine implements JsonEngine {
+
+    private static final SerializeFilter[] NO_FILTERS = new SerializeFilter[0];
+
+    private static final ObjectDeserializer CLASS_NOT_ALLOWED = new ObjectDeserializer() {
+        @Override
+        public <T> T deserialze(DefaultJSONParser parser, Type type, Object fieldName) {
+            throw new JSONException("Deserializing java.lang.Class is not allowed");
+        }
+
+        @Override
+        public int getFastMatchToken() {
+            return JSONToken.LITERAL_STRING;
+        }
+    };
+
+    private final SerializeConfig serializeConfig;
+    private final ParserConfig parserConfig;
+    private final SerializerFeature[] serializerFeatures;
+    private final int parserFeatures;
+
+    public FastjsonEngine() {
+        this(new SerializeConfig(), new ParserConfig(), new SerializerFeature[0]);
+    }
+
+    /**
+     * @param serializeConfig    序列化配置
+     * @param parserConfig       反序列化配置，会在上面禁止 java.lang.Class
+     * @param serializerFeatures 序列化特性，不能开启 PrettyFormat，否则无法用于 SSE/NDJSON
+     * @param parserFeatures     反序列化特性，在默认特性的基础上开启
+     */
+    public FastjsonEngine(SerializeConfig serializeConfig, ParserConfig parserConfig,
+                          SerializerFeature[] serializerFeatures, Feature... parserFeatures) {
+        this.serializeConfig = serializeConfig;
+        this.parserConfig = parserConfig;
+        this.parserConfig.putDeserializer(Class.class, CLASS_NOT_ALLOWED);
+        this.serializerFeatures = serializerFeatures.clone();
+        int features = JSON.DEFAULT_PARSER_FEATURE;
+        for (Feature feature : parserFeatures) {
+            features = Feature.config(features, feature, true);
+        }
+        this.parserFeatures = features;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations) {
+        return isBindable(type, JacksonProvider._unreadableClasses);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations) {
+        return isBindable(type, JacksonProvider._unwritableClasses);
+    }
+
+    /**
+     * 和 {@link JacksonProvider} 排除同样的类型，交给 Jersey 自带的 provider 处理
+     */
+    private static boolean isBindable(Class<?> type, Class<?>[] excluded) {
+        if (JacksonProvider._untouchables.contains(new ClassKey(type))) {
+            return false;
+        }
+        for (Class<?> cls : excluded) {
+            if (cls.isAssignableFrom(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, InputStream entityStream) throws IOException {
+        JSONReaderScanner lexer = null;
+        if (entityStream instanceof HttpContentInputStream) {
+            ByteBuf content = ((HttpContentInputStream) entityStream).aggregatedContent();
+            if (content != null && content.hasArray()) {
+                //聚合的请求体直接从数组解码，不经过 Reader
+                CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(content.array(),
+                        content.arrayOffset() + content.readerIndex(), content.readableBytes()));
+                content.skipBytes(content.readableBytes());
+                lexer = new JSONReaderScanner(chars.array(), chars.limit(), parserFeatures);
+            }
+        }
+        if (lexer == null) {
+            lexer = new JSONReaderScanner(new NonClosingReader(entityStream), parserFeatures);
+        }
+        DefaultJSONParser parser = new DefaultJSONParser(lexer, parserConfig);
+        Object value = parser.parseObject(genericType);
+        parser.handleResovleTask(value);
+        //检查是否有多余的内容，不会关闭 entityStream
+        parser.close();
+        return value;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, OutputStream entityStream) throws IOException {
+        JSON.writeJSONString(entityStream, StandardCharsets.UTF_8, value, serializeConfig, NO_FILTERS, null,
+                JSON.DEFAULT_GENERATE_FEATURE, serializerFeatures);
+    }
+
+    private static final class NonClosingReader extends FilterReader {
+        NonClosingReader(InputStream in) {
+            super(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
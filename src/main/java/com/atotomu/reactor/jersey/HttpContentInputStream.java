@@ -2,150 +2,151 @@ package com.atotomu.reactor.jersey;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.concurrent.Queues;
 
+import javax.ws.rs.WebApplicationException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
+ * 单生产者（netty event loop）/单消费者（Jersey 工作线程）的请求体输入流。
+ * chunk 通过无锁 SPSC 队列交接，读线程只在没有任何可读数据时才 park。
+ *
  * @author wangtong
  * @since 1.0
  */
 public class HttpContentInputStream extends InputStream {
     private static final Logger logger = LoggerFactory.getLogger(HttpContentInputStream.class);
 
-    private final Lock lock = new ReentrantLock();
-    private volatile boolean isClosed = false;
+    /**
+     * 流式模式下预取的 chunk 数量
+     */
+    static final int STREAMING_PREFETCH = 8;
+    /**
+     * 每消费这么多个 chunk 再批量补充需求，减少跨线程的 request 调用
+     */
+    static final int STREAMING_REPLENISH = STREAMING_PREFETCH / 2;
+
+    private static final AtomicIntegerFieldUpdater<HttpContentInputStream> CLOSED =
+            AtomicIntegerFieldUpdater.newUpdater(HttpContentInputStream.class, "closed");
+    private static final AtomicIntegerFieldUpdater<HttpContentInputStream> DISCARD_WIP =
+            AtomicIntegerFieldUpdater.newUpdater(HttpContentInputStream.class, "discardWip");
+    private static final AtomicIntegerFieldUpdater<HttpContentInputStream> SIGNALS =
+            AtomicIntegerFieldUpdater.newUpdater(HttpContentInputStream.class, "signals");
+
+    private volatile int closed;
+    private volatile int discardWip;
+    /**
+     * 生产方每次 offer/完成后递增，读线程 park 前对比，避免丢失唤醒
+     */
+    private volatile int signals;
 
     private volatile boolean isCompleted = false;
     private volatile Throwable completedWithError = null;
-    private final Condition contentAvailabilityMonitor = lock.newCondition();
-    private final ByteBuf contentBuffer;
+    private volatile Thread waiter;
+    private final boolean streaming;
+    private final Queue<ByteBuf> chunks;
+    private final ContentSubscriber subscriber;
+    private final int maxContentLength;
+    private final SpillableContentBuffer spillableBuffer;
+    private final BufferTracker.Ledger ledger;
+    /**
+     * 当前正在读的 chunk，只有读线程访问
+     */
+    private ByteBuf contentBuffer = Unpooled.EMPTY_BUFFER;
+    private int consumed;
 
     public HttpContentInputStream(final ByteBufAllocator allocator, final Mono<byte[]> content) {
-        contentBuffer = allocator.buffer();
-        content.subscribe(bytes -> {
-                    lock.lock();
-                    try {
-                        if (bytes.length > 0) {
-                            contentBuffer.writeBytes(bytes);
-                        }
-
-                        contentAvailabilityMonitor.signalAll();
-                    } catch (Exception e) {
-                        logger.error("Error on server", e);
-                    } finally {
-                        lock.unlock();
-                    }
-                },
-                throwable -> {
-                    lock.lock();
-                    try {
-                        completedWithError = throwable;
-                        isCompleted = true;
-
-                        logger.error("Flux Observer, got error: " + throwable.getMessage());
-                        contentAvailabilityMonitor.signalAll();
-                    } finally {
-                        lock.unlock();
-                    }
-                },
-                () -> {
-                    lock.lock();
-                    try {
-                        isCompleted = true;
-
-                        logger.debug("Processing complete");
-                        contentAvailabilityMonitor.signalAll();
-                    } finally {
-                        lock.unlock();
-                    }
-                });
+        streaming = false;
+        chunks = Queues.<ByteBuf>one().get();
+        maxContentLength = Integer.MAX_VALUE;
+        spillableBuffer = null;
+        ledger = null;
+        subscriber = new ContentSubscriber();
+        content.map(Unpooled::wrappedBuffer).subscribe(subscriber);
     }
 
+    /**
+     * 流式读取请求体：收到的 chunk 不做拷贝，retain 后直接放入队列，读完一个 release 一个并向上游再请求一个，
+     * 上游没有需求时 reactor-netty 会关闭 autoRead，从而把背压传递到 TCP 层。
+     *
+     * @param allocator 未使用，保留以兼容原有签名
+     * @param content   请求体
+     */
     public HttpContentInputStream(final ByteBufAllocator allocator, final Flux<ByteBuf> content) {
-        contentBuffer = allocator.buffer();
-        content.subscribe(byteBuf -> {
-                    lock.lock();
-                    try {
-
-                        //This is not only to stop writing 0 bytes as it might seems
-                        //In case of no payload request, like GET
-                        //We are getting onNext( 0 bytes ), onComplete during the stress conditions
-                        //AFTER we say subscriber.onCompleted() and tiered down and close
-                        //request stream, this doesn't contradict logic, in fact 0 bytes is just the same as nothing to write
-                        //but that save us annoying log record every time this happens
-                        if (byteBuf.readableBytes() > 0) {
-                            contentBuffer.writeBytes(byteBuf);
-                        }
-
-                        contentAvailabilityMonitor.signalAll();
-                    } catch (Exception e) {
-                        logger.error("Error on server", e);
-                    } finally {
-                        lock.unlock();
-                    }
-                },
-                throwable -> {
-                    lock.lock();
-                    try {
-                        completedWithError = throwable;
-                        isCompleted = true;
-
-                        logger.error("Flux Observer, got error: " + throwable.getMessage());
-                        contentAvailabilityMonitor.signalAll();
-                    } finally {
-                        lock.unlock();
-                    }
-                },
-                () -> {
-                    lock.lock();
-                    try {
-                        isCompleted = true;
-
-                        logger.debug("Processing complete");
-                        contentAvailabilityMonitor.signalAll();
-                    } finally {
-                        lock.unlock();
-                    }
-                });
+        this(allocator, content, ContentBufferLimits.UNLIMITED, true);
     }
 
+    /**
+     * @param allocator 聚合模式下内存缓冲的分配器
+     * @param content   请求体
+     * @param limits    请求体超过 maxContentLength 时读取抛出 413；聚合模式下按内存阈值和全局预算转存临时文件
+     * @param streaming true 流式读取，false 完整接收后再交给读线程
+     */
+    public HttpContentInputStream(final ByteBufAllocator allocator, final Flux<ByteBuf> content,
+                                  final ContentBufferLimits limits, final boolean streaming) {
+        this(allocator, content, limits, streaming, null);
+    }
+
+    /**
+     * @param ledger 不为 null 时记录这个流持有的 chunk，见 {@link BufferTracker}
+     */
+    HttpContentInputStream(final ByteBufAllocator allocator, final Flux<ByteBuf> content,
+                           final ContentBufferLimits limits, final boolean streaming, final BufferTracker.Ledger ledger) {
+        this.streaming = streaming;
+        this.ledger = ledger;
+        chunks = streaming ? Queues.<ByteBuf>get(STREAMING_PREFETCH).get() : Queues.<ByteBuf>one().get();
+        maxContentLength = limits.getMaxContentLength();
+        spillableBuffer = streaming ? null : new SpillableContentBuffer(allocator, limits);
+        subscriber = new ContentSubscriber();
+        content.subscribe(subscriber);
+    }
 
     @Override
     public int available() throws IOException {
+        if (closed != 0) {
+            return 0;
+        }
+        if (streaming) {
+            return contentBuffer.readableBytes();
+        }
+        //聚合模式下只有一个 chunk，完成之后才可能可读
+        if (isCompleted && !contentBuffer.isReadable()) {
+            nextChunk();
+        }
         return isCompleted ? contentBuffer.readableBytes() : 0;
     }
 
     @Override
     public void mark(int readlimit) {
+        //聚合模式下 chunk 还没到时，新 chunk 的 readerIndex 为 0，正好就是 mark 的位置
         contentBuffer.markReaderIndex();
     }
 
     @Override
     public boolean markSupported() {
-        return true;
+        // chunk 读完即释放，流式模式下无法回退
+        return !streaming;
     }
 
     @Override
     public int read() throws IOException {
-        lock.lock();
-
-        try {
-            if (!await()) {
-                return -1;
-            }
-
-            return contentBuffer.readByte() & 0xff;
-        } finally {
-            lock.unlock();
+        if (!contentBuffer.isReadable() && !await()) {
+            return -1;
         }
+
+        return contentBuffer.readByte() & 0xff;
     }
 
     @Override
@@ -162,39 +163,66 @@ public class HttpContentInputStream extends InputStream {
             return 0;
         }
 
-        lock.lock();
+        if (!contentBuffer.isReadable() && !await()) {
+            return -1;
+        }
 
-        try {
-            if (!await()) {
-                return -1;
-            }
+        int size = Math.min(len, contentBuffer.readableBytes());
 
-            int size = Math.min(len, contentBuffer.readableBytes());
+        contentBuffer.readBytes(b, off, size);
 
-            contentBuffer.readBytes(b, off, size);
+        return size;
+    }
 
-            return size;
-        } finally {
-            lock.unlock();
+    /**
+     * 聚合模式下等待请求体接收完成，直接返回还没有读取的内容，不做拷贝；流式模式下返回 null。
+     * 返回的 ByteBuf 仍然归这个流所有，调用方不能 release，读完后用 skipBytes 标记为已读
+     */
+    ByteBuf aggregatedContent() throws IOException {
+        if (streaming) {
+            return null;
         }
+        //聚合模式下只有一个 chunk，就是剩余的全部内容
+        if (!contentBuffer.isReadable() && !await()) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        return contentBuffer;
+    }
+
+    /**
+     * @return 目前为止收到的请求体字节数，解压之后的大小
+     */
+    public long getReceivedBytes() {
+        return subscriber.received;
     }
 
     @Override
     public void close() throws IOException {
-        //we need a sync block here, as the double close sometimes is reality and we want to decrement ref. counter only once
-        synchronized (this) {
-            if (isClosed) {
-                return;
-            }
-
-            isClosed = true;
+        //the double close sometimes is reality and we want to decrement ref. counter only once
+        if (!CLOSED.compareAndSet(this, 0, 1)) {
+            return;
         }
 
-        contentBuffer.release();
+        try {
+            subscriber.dispose();
+        } catch (RuntimeException e) {
+            //cancel drains reactor-netty's queue, an error still pending there (e.g. connection reset) bubbles up here
+            logger.debug("Request content failed after close", e);
+        }
+        release(contentBuffer);
+        contentBuffer = Unpooled.EMPTY_BUFFER;
+        discardChunks();
+        if (spillableBuffer != null) {
+            spillableBuffer.release();
+        }
+        signal();
     }
 
     @Override
     public void reset() throws IOException {
+        if (streaming) {
+            throw new IOException("mark/reset not supported");
+        }
         contentBuffer.resetReaderIndex();
     }
 
@@ -218,28 +246,176 @@ public class HttpContentInputStream extends InputStream {
         return nBytes;
     }
 
+    private void signal() {
+        SIGNALS.incrementAndGet(this);
+        Thread t = waiter;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * 关闭之后到达的 chunk 可能由 event loop 放入队列，关闭线程和 event loop 谁后到谁负责清理，
+     * 用 wip 计数保证同一时刻只有一个线程在 poll
+     */
+    private void discardChunks() {
+        if (DISCARD_WIP.getAndIncrement(this) != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            ByteBuf chunk;
+            while ((chunk = chunks.poll()) != null) {
+                release(chunk);
+            }
+            missed = DISCARD_WIP.addAndGet(this, -missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * 当前 chunk 读完后切换到下一个，旧 chunk 立即释放
+     */
+    private boolean nextChunk() {
+        ByteBuf next = chunks.poll();
+        if (next == null) {
+            return false;
+        }
+        release(contentBuffer);
+        contentBuffer = next;
+        if (streaming && ++consumed == STREAMING_REPLENISH) {
+            consumed = 0;
+            subscriber.request(STREAMING_REPLENISH);
+        }
+        return true;
+    }
+
+    private void release(ByteBuf chunk) {
+        if (ledger != null) {
+            ledger.released(chunk);
+        }
+        chunk.release();
+    }
+
     private boolean await() throws IOException {
-        //await in here
-        while (!isCompleted && !contentBuffer.isReadable()) {
-            try {
-                contentAvailabilityMonitor.await();
-            } catch (InterruptedException e) {
+        //only park when there is nothing left to read
+        while (!contentBuffer.isReadable()) {
+            if (closed != 0) {
+                throw new IOException("Stream closed");
+            }
+            int observed = signals;
+            if (nextChunk()) {
+                continue;
+            }
+            if (isCompleted) {
+                //the last chunk is always queued before the completion flag is set
+                if (nextChunk()) {
+                    continue;
+                }
+                break;
+            }
+            waiter = Thread.currentThread();
+            if (observed == signals) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+            if (Thread.interrupted()) {
                 // Restore interrupt status and bailout
                 Thread.currentThread().interrupt();
 
-                logger.error("Interrupted: " + e.getMessage());
-                throw new IOException(e);
+                logger.error("Interrupted while waiting for request content");
+                throw new IOException(new InterruptedException());
             }
         }
 
         if (completedWithError != null) {
+            if (completedWithError instanceof WebApplicationException) {
+                //让 Jersey 直接按状态码返回，例如 413
+                throw (WebApplicationException) completedWithError;
+            }
             throw new IOException(completedWithError);
         }
 
-        if (isCompleted && !contentBuffer.isReadable()) {
-            return false;
+        return contentBuffer.isReadable();
+    }
+
+    private final class ContentSubscriber extends BaseSubscriber<ByteBuf> {
+
+        /**
+         * 只在 event loop 上修改，其它线程通过 {@link #getReceivedBytes()} 读取
+         */
+        private volatile long received;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(streaming ? STREAMING_PREFETCH : Long.MAX_VALUE);
         }
 
-        return true;
+        @Override
+        protected void hookOnNext(ByteBuf byteBuf) {
+            //0 bytes is just the same as nothing to write, keep the demand going
+            if (!byteBuf.isReadable()) {
+                if (streaming) {
+                    request(1);
+                }
+                return;
+            }
+            if (closed != 0) {
+                return;
+            }
+            received += byteBuf.readableBytes();
+            if (received > maxContentLength) {
+                cancel();
+                hookOnError(new WebApplicationException(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code()));
+                return;
+            }
+            if (spillableBuffer != null) {
+                try {
+                    spillableBuffer.write(byteBuf);
+                } catch (IOException e) {
+                    cancel();
+                    hookOnError(e);
+                }
+                return;
+            }
+            //reactor-netty releases the buffer after onNext, keep it until the reader consumed it
+            offer(streaming ? byteBuf.retain() : byteBuf);
+        }
+
+        private void offer(ByteBuf chunk) {
+            if (ledger != null) {
+                ledger.acquired(chunk);
+            }
+            chunks.offer(chunk);
+            if (closed != 0) {
+                discardChunks();
+                return;
+            }
+            signal();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            completedWithError = throwable;
+            isCompleted = true;
+
+            logger.error("Flux Observer, got error: " + throwable.getMessage());
+            signal();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            if (spillableBuffer != null) {
+                try {
+                    offer(spillableBuffer.complete());
+                } catch (IOException e) {
+                    hookOnError(e);
+                    return;
+                }
+            }
+            isCompleted = true;
+
+            logger.debug("Processing complete");
+            signal();
+        }
     }
 }
@@ -0,0 +1,117 @@
+package com.atotomu.reactor.jersey;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.lang.reflect.Type;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * 一个 {@link ObjectMapper} 预先构造好的 {@link ObjectReader}/{@link ObjectWriter}，按泛型类型和 JsonView 缓存，
+ * 以及 provider 对每个类型 isReadable/isWriteable 的判断结果。
+ * reader/writer 在创建时复制 mapper 的配置，之后修改同一个 mapper 的配置不会生效，需要换一个 mapper。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class JacksonBindings {
+
+    private final ObjectMapper mapper;
+    private final ConcurrentMap<Type, JavaType> types = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<WriterKey, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final ClassValue<Boolean> readable;
+    private final ClassValue<Boolean> writeable;
+
+    JacksonBindings(ObjectMapper mapper, Predicate<Class<?>> readable, Predicate<Class<?>> writeable) {
+        this.mapper = mapper;
+        this.readable = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return readable.test(type);
+            }
+        };
+        this.writeable = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return writeable.test(type);
+            }
+        };
+    }
+
+    boolean isReadable(Class<?> type) {
+        return readable.get(type);
+    }
+
+    boolean isWriteable(Class<?> type) {
+        return writeable.get(type);
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    JavaType type(Type genericType) {
+        JavaType type = types.get(genericType);
+        if (type == null) {
+            type = types.computeIfAbsent(genericType, mapper::constructType);
+        }
+        return type;
+    }
+
+    ObjectReader reader(Type genericType) {
+        ObjectReader reader = readers.get(genericType);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(genericType, t -> mapper.readerFor(type(t)));
+        }
+        return reader;
+    }
+
+    /**
+     * @param rootType 序列化时使用的根类型，null 表示按值的实际类型
+     * @param view     JsonView，null 表示不使用
+     */
+    ObjectWriter writer(Type rootType, Class<?> view) {
+        WriterKey key = new WriterKey(rootType, view);
+        ObjectWriter writer = writers.get(key);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(key, k -> {
+                ObjectWriter w = k.rootType == null ? mapper.writer() : mapper.writerFor(type(k.rootType));
+                return k.view == null ? w : w.withView(k.view);
+            });
+        }
+        return writer;
+    }
+
+    private static final class WriterKey {
+        final Type rootType;
+        final Class<?> view;
+
+        WriterKey(Type rootType, Class<?> view) {
+            this.rootType = rootType;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WriterKey)) {
+                return false;
+            }
+            WriterKey that = (WriterKey) o;
+            return Objects.equals(rootType, that.rootType) && view == that.view;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(rootType) + Objects.hashCode(view);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.atotomu.reactor.jersey;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * 使用 CBOR（RFC 7049）编码的 {@link JacksonProvider}，注解、JsonView 和 reader/writer 缓存都和 JSON 相同。
+ * 通过 {@link JerseyBasedHandler.Builder#addValueProvider(Class)} 注册，资源方法的 @Produces/@Consumes
+ * 需要包含 {@link #APPLICATION_CBOR}（或者不声明），由请求的 Accept/Content-Type 选择格式
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Provider
+@Consumes(JacksonCborProvider.APPLICATION_CBOR)
+@Produces(JacksonCborProvider.APPLICATION_CBOR)
+public class JacksonCborProvider extends JacksonProvider {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    public JacksonCborProvider() {
+        this.mapper = new ObjectMapper(new CBORFactory());
+    }
+
+    @Override
+    protected boolean hasMatchingMediaType(MediaType mediaType) {
+        return mediaType != null && "application".equalsIgnoreCase(mediaType.getType())
+                && "cbor".equalsIgnoreCase(mediaType.getSubtype());
+    }
+}
@@ -0,0 +1,53 @@
+package com.atotomu.reactor.jersey;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * 基于 Jackson 的 {@link JsonEngine}，行为和 {@link JacksonProvider} 完全一致，包括 reader/writer 缓存、
+ * JsonView 和聚合请求体的直接解析
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class JacksonJsonEngine implements JsonEngine {
+
+    private final JacksonProvider provider = new JacksonProvider();
+
+    public JacksonJsonEngine() {
+    }
+
+    public JacksonJsonEngine(ObjectMapper mapper) {
+        provider.mapper = mapper;
+    }
+
+    JacksonProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations) {
+        return provider.isReadable(type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations) {
+        return provider.isWriteable(type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, InputStream entityStream) throws IOException {
+        return provider.readFrom(type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE, null, entityStream);
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, OutputStream entityStream) throws IOException {
+        provider.writeTo(value, type, genericType, annotations, MediaType.APPLICATION_JSON_TYPE, null, entityStream);
+    }
+}
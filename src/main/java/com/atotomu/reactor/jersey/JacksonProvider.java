@@ -2,6 +2,7 @@ package com.atotomu.reactor.jersey;
 
 import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JavaType;
@@ -12,6 +13,7 @@ import com.fasterxml.jackson.databind.type.ClassKey;
 import com.fasterxml.jackson.databind.util.ClassUtil;
 import com.fasterxml.jackson.databind.util.JSONPObject;
 import com.sun.jersey.core.provider.AbstractMessageReaderWriterProvider;
+import io.netty.buffer.ByteBuf;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -40,18 +42,32 @@ import java.util.HashSet;
 public class JacksonProvider extends AbstractMessageReaderWriterProvider<Object> {
 
     volatile ObjectMapper mapper = new ObjectMapper();
+    /**
+     * 当前 mapper 的 reader/writer 和 isReadable/isWriteable 缓存，mapper 被替换后第一次使用时重建，
+     * 所以 _cfg 开头的配置要在第一次使用之前设置好
+     */
+    private volatile JacksonBindings bindings;
 
     protected String _jsonpFunctionName;
     protected HashSet<ClassKey> _cfgCustomUntouchables;
     protected boolean _cfgCheckCanSerialize = false;
     protected boolean _cfgCheckCanDeserialize = false;
 
+    /**
+     * 除了 media type 之外只和实体类型有关，结果按类型缓存在当前 mapper 的 {@link JacksonBindings} 里，
+     * Jersey 选择 provider 时只需要一次查找
+     */
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
-        if (!isJsonType(mediaType)) {
-            return false;
-        }
+        return hasMatchingMediaType(mediaType) && bindings(locateMapper(type, mediaType)).isWriteable(type);
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return hasMatchingMediaType(mediaType) && bindings(locateMapper(type, mediaType)).isReadable(type);
+    }
 
+    private boolean _isWriteable(Class<?> type, ObjectMapper mapper) {
         /* Ok: looks like we must weed out some core types here; ones that
          * make no sense to try to bind from JSON:
          */
@@ -71,18 +87,14 @@ public class JacksonProvider extends AbstractMessageReaderWriterProvider<Object>
 
         // Also: if we really want to verify that we can deserialize, we'll check:
         if (_cfgCheckCanSerialize) {
-            if (!locateMapper(type, mediaType).canSerialize(type)) {
+            if (!mapper.canSerialize(type)) {
                 return false;
             }
         }
         return true;
     }
 
-    @Override
-    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
-        if (!isJsonType(mediaType)) {
-            return false;
-        }
+    private boolean _isReadable(Class<?> type, ObjectMapper mapper) {
          /* Ok: looks like we must weed out some core types here; ones that
          * make no sense to try to bind from JSON:
          */
@@ -101,7 +113,6 @@ public class JacksonProvider extends AbstractMessageReaderWriterProvider<Object>
         }
         // Finally: if we really want to verify that we can serialize, we'll check:
         if (_cfgCheckCanSerialize) {
-            ObjectMapper mapper = locateMapper(type, mediaType);
             if (!mapper.canDeserialize(mapper.constructType(type))) {
                 return false;
             }
@@ -113,52 +124,97 @@ public class JacksonProvider extends AbstractMessageReaderWriterProvider<Object>
         return mapper;
     }
 
+    JacksonBindings bindings(ObjectMapper mapper) {
+        JacksonBindings current = bindings;
+        if (current == null || current.mapper() != mapper) {
+            current = new JacksonBindings(mapper, type -> _isReadable(type, mapper), type -> _isWriteable(type, mapper));
+            bindings = current;
+        }
+        return current;
+    }
+
     @Override
     public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
-        ObjectMapper _mapper = locateMapper(type, mediaType);
-        JsonParser jp = _mapper.getFactory().createParser(entityStream);
+        JacksonBindings _bindings = bindings(locateMapper(type, mediaType));
+        JsonParser jp = createParser(_bindings.mapper().getFactory(), entityStream);
         jp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
-        return _mapper.readValue(jp, _mapper.constructType(genericType));
+        try {
+            return _bindings.reader(genericType).readValue(jp);
+        } catch (JsonMappingException e) {
+            // the entity stream may fail with a status (e.g. 413) while a bean is being bound, don't hide it
+            if (e.getCause() instanceof WebApplicationException) {
+                throw (WebApplicationException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 聚合模式下请求体已经完整地在一块堆内存里，直接解析底层数组，不再经过 InputStream 拷贝到解析器的缓冲区；
+     * 流式读取或者转存到临时文件的请求体仍然按流解析
+     */
+    private static JsonParser createParser(JsonFactory factory, InputStream entityStream) throws IOException {
+        if (entityStream instanceof HttpContentInputStream) {
+            ByteBuf content = ((HttpContentInputStream) entityStream).aggregatedContent();
+            if (content != null && content.hasArray()) {
+                int length = content.readableBytes();
+                JsonParser jp = factory.createParser(content.array(), content.arrayOffset() + content.readerIndex(), length);
+                //数组在流关闭前一直有效，整个请求体视为已读
+                content.skipBytes(length);
+                return jp;
+            }
+        }
+        return factory.createParser(entityStream);
     }
 
     @Override
     public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-        ObjectMapper _mapper = locateMapper(type, mediaType);
+        JacksonBindings _bindings = bindings(locateMapper(type, mediaType));
+        ObjectMapper _mapper = _bindings.mapper();
         JsonGenerator jg = _mapper.getFactory().createGenerator(entityStream, JsonEncoding.UTF8);
         jg.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
-        JavaType rootType = null;
-        if (genericType != null && value != null) {
-            if (genericType.getClass() != Class.class) { // generic types are other impls of 'java.lang.reflect.Type'
-                rootType = _mapper.getTypeFactory().constructType(genericType);
-                if (rootType.getRawClass() == Object.class) {
-                    rootType = null;
-                }
-            }
-        }
-
+        Type rootType = value == null ? null : rootType(_bindings, genericType);
         Class<?> viewToUse = null;
         if (annotations != null && annotations.length > 0) {
             viewToUse = _findView(_mapper, annotations);
         }
-        if (viewToUse != null) {
-            ObjectWriter viewWriter = _mapper.writerWithView(viewToUse);
-            // [JACKSON-245] Allow automatic JSONP wrapping
-            if (_jsonpFunctionName != null) {
-                viewWriter.writeValue(jg, new JSONPObject(this._jsonpFunctionName, value, rootType));
-            } else if (rootType != null) {
-                _mapper.writerFor(rootType).withView(viewToUse).writeValue(jg, value);
-            } else {
-                viewWriter.writeValue(jg, value);
-            }
+        // [JACKSON-245] Allow automatic JSONP wrapping
+        if (_jsonpFunctionName != null) {
+            JavaType jsonpType = rootType == null ? null : _bindings.type(rootType);
+            _bindings.writer(null, viewToUse).writeValue(jg, new JSONPObject(this._jsonpFunctionName, value, jsonpType));
         } else {
-            if (_jsonpFunctionName != null) {
-                _mapper.writeValue(jg, new JSONPObject(this._jsonpFunctionName, value, rootType));
-            } else if (rootType != null) {
-                _mapper.writerFor(rootType).writeValue(jg, value);
-            } else {
-                _mapper.writeValue(jg, value);
+            _bindings.writer(rootType, viewToUse).writeValue(jg, value);
+        }
+    }
+
+    private static Type rootType(JacksonBindings bindings, Type genericType) {
+        if (genericType != null && genericType.getClass() != Class.class) { // generic types are other impls of 'java.lang.reflect.Type'
+            if (bindings.type(genericType).getRawClass() != Object.class) {
+                return genericType;
             }
         }
+        return null;
+    }
+
+    /**
+     * 启动预热：按 writeTo 的方式构造并缓存 writer，Jackson 构造 writer 时会创建根类型的序列化器；
+     * 没有泛型信息时按实际类型序列化，序列化器缓存在 mapper 里
+     */
+    void prepareWriter(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) throws IOException {
+        JacksonBindings _bindings = bindings(locateMapper(type, mediaType));
+        Type rootType = rootType(_bindings, genericType);
+        Class<?> viewToUse = annotations.length > 0 ? _findView(_bindings.mapper(), annotations) : null;
+        ObjectWriter writer = _bindings.writer(rootType, viewToUse);
+        if (rootType == null && type != Object.class) {
+            writer.forType(type);
+        }
+    }
+
+    /**
+     * 启动预热：构造并缓存 reader，同时创建根类型的反序列化器
+     */
+    void prepareReader(Class<?> type, Type genericType, MediaType mediaType) {
+        bindings(locateMapper(type, mediaType)).reader(genericType);
     }
 
     private Class<?> _findView(ObjectMapper mapper, Annotation[] annotations) throws JsonMappingException {
@@ -201,6 +257,13 @@ public class JacksonProvider extends AbstractMessageReaderWriterProvider<Object>
         return false;
     }
 
+    /**
+     * 是否处理这个 media type，二进制格式的子类覆盖这个方法，其余的绑定逻辑和 JSON 完全相同
+     */
+    protected boolean hasMatchingMediaType(MediaType mediaType) {
+        return isJsonType(mediaType);
+    }
+
     protected boolean isJsonType(MediaType mediaType) {
         if (mediaType != null) {
             // Ok: there are also "xxx+json" subtypes, which count as well
@@ -0,0 +1,36 @@
+package com.atotomu.reactor.jersey;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * 使用 Smile（二进制 JSON）编码的 {@link JacksonProvider}，注解、JsonView 和 reader/writer 缓存都和 JSON 相同。
+ * 通过 {@link JerseyBasedHandler.Builder#addValueProvider(Class)} 注册，资源方法的 @Produces/@Consumes
+ * 需要包含 {@link #APPLICATION_SMILE}（或者不声明），由请求的 Accept/Content-Type 选择格式
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Provider
+@Consumes(JacksonSmileProvider.APPLICATION_SMILE)
+@Produces(JacksonSmileProvider.APPLICATION_SMILE)
+public class JacksonSmileProvider extends JacksonProvider {
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    public JacksonSmileProvider() {
+        this.mapper = new ObjectMapper(new SmileFactory());
+    }
+
+    @Override
+    protected boolean hasMatchingMediaType(MediaType mediaType) {
+        return mediaType != null && "application".equalsIgnoreCase(mediaType.getType())
+                && "x-jackson-smile".equalsIgnoreCase(mediaType.getSubtype());
+    }
+}
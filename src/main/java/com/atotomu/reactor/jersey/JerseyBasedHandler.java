@@ -1,16 +1,30 @@
 package com.atotomu.reactor.jersey;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.graphite.GraphiteReporter;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.sun.jersey.api.container.ContainerFactory;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.spi.container.ContainerRequest;
-import com.sun.jersey.spi.container.ContainerResponseWriter;
 import com.sun.jersey.spi.container.WebApplication;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.HttpHeaders;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 import reactor.ipc.netty.http.server.HttpServerRequest;
 import reactor.ipc.netty.http.server.HttpServerResponse;
@@ -18,12 +32,17 @@ import reactor.ipc.netty.http.server.HttpServerResponse;
 import javax.annotation.PreDestroy;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 
 /**
@@ -36,6 +55,29 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
     private WebApplication application;
     private NettyToJerseyBridge nettyToJerseyBridge;
     private final ResourceConfig resourceConfig;
+    private final boolean streamingRequest;
+    private final ContentBufferLimits contentBufferLimits;
+    private final int responseChunkSize;
+    private final ResponseCompression responseCompression;
+    private final ResponseCache responseCache;
+    /**
+     * 定期清理 {@link #responseCache} 里过期的条目
+     */
+    private final Disposable cacheCleanUp;
+    private final RequestCoalescer requestCoalescer;
+    private final WorkerPool workerPool;
+    private final boolean virtualThreads;
+    private final DisruptorDispatcher disruptorDispatcher;
+    private final Scheduler scheduler;
+    private final RouteTable routeTable;
+    private final BridgeMetrics metrics;
+    private final GraphiteReporter graphiteReporter;
+    private final BufferTracker bufferTracker;
+    private final MetricsDispatchAdapter metricsAdapter;
+    /**
+     * 预热期间的请求不经过响应缓存和请求合并，也不计入指标和 ByteBuf 跟踪
+     */
+    private volatile boolean warmingUp = false;
     private volatile boolean isShutdown = false;
 
     /**
@@ -46,43 +88,320 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
     }
 
     public JerseyBasedHandler(ClassPathResourceConfig config) {
+        this(config, new Builder());
+    }
+
+    private JerseyBasedHandler(ClassPathResourceConfig config, Builder builder) {
         resourceConfig = config;
+        streamingRequest = builder.streamingRequest;
+        contentBufferLimits = builder.contentBufferLimits;
+        responseChunkSize = builder.responseChunkSize;
+        responseCompression = builder.responseCompression;
+        responseCache = builder.responseCache;
+        //过期的条目没有再被请求时也要释放堆外内存
+        cacheCleanUp = responseCache == null ? null
+                : Schedulers.single().schedulePeriodically(responseCache::cleanUp, 1, 1, TimeUnit.SECONDS);
+        requestCoalescer = builder.requestCoalescer;
+        bufferTracker = builder.bufferTracker;
+        workerPool = builder.workerPool;
+        virtualThreads = builder.virtualThreads;
+        disruptorDispatcher = builder.disruptorDispatcher;
+        if (workerPool != null) {
+            scheduler = workerPool.scheduler();
+        } else if (virtualThreads) {
+            scheduler = Schedulers.fromExecutorService(VirtualThreads.newExecutor("jersey-virtual-"));
+        } else {
+            scheduler = Schedulers.elastic();
+        }
+        routeTable = RouteTable.scan(resourceConfig);
+        if (builder.metricRegistry != null) {
+            metrics = new BridgeMetrics(builder.metricRegistry);
+            metricsAdapter = new MetricsDispatchAdapter(builder.metricRegistry);
+            resourceConfig.getSingletons().add(metricsAdapter);
+        } else {
+            metrics = null;
+            metricsAdapter = null;
+        }
+        if (builder.graphiteAddress != null) {
+            graphiteReporter = BridgeMetrics.graphiteReporter(builder.metricRegistry, builder.graphiteAddress,
+                    builder.graphitePrefix);
+            graphiteReporter.start(builder.graphitePeriod, builder.graphitePeriodUnit);
+        } else {
+            graphiteReporter = null;
+        }
+        //must run last, after all other response filters have seen the response
+        @SuppressWarnings("unchecked")
+        List<Object> responseFilters = resourceConfig.getContainerResponseFilters();
+        responseFilters.add(new AsyncResponseFilter(scheduler));
         NettyContainer container = ContainerFactory.createContainer(NettyContainer.class, resourceConfig);
         application = container.getApplication();
         nettyToJerseyBridge = container.getNettyToJerseyBridge();
+        if (disruptorDispatcher != null) {
+            disruptorDispatcher.start(this::handleRequest);
+        }
         logger.info("Started Jersey based request router.");
     }
 
+    /**
+     * 构造完成后由 {@link Builder#build()} 调用，预热请求走真实的 apply 路径，但不留下缓存、合并、指标和 ByteBuf 跟踪的记录
+     */
+    void warmup(Warmup warmup) {
+        warmingUp = true;
+        if (metricsAdapter != null) {
+            metricsAdapter.pause(true);
+        }
+        try {
+            warmup.run(this, resourceConfig, application.getMessageBodyWorkers());
+        } finally {
+            warmingUp = false;
+            if (metricsAdapter != null) {
+                metricsAdapter.pause(false);
+            }
+        }
+    }
+
     @Override
     public Publisher<Void> apply(HttpServerRequest request, HttpServerResponse response) {
+        if (metrics == null || warmingUp) {
+            return handle(request, response);
+        }
+        long start = metrics.begin();
+        Publisher<Void> handled;
+        try {
+            handled = handle(request, response);
+        } catch (RuntimeException e) {
+            metrics.end(start, HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), true);
+            throw e;
+        }
+        return Mono.from(handled).doFinally(signal -> metrics.end(start,
+                signal == SignalType.ON_ERROR ? HttpResponseStatus.INTERNAL_SERVER_ERROR.code() : response.status().code(),
+                signal == SignalType.ON_ERROR));
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
 
          /*
          * Creating the Container request eagerly, subscribes to the request content eagerly. Failure to do so, will
           * result in expiring/loss of content.
          */
 
+        if (contentBufferLimits.exceedsMaxContentLength(request.requestHeaders())) {
+            // reject before buffering anything, the unread body is discarded with the connection
+            return response.status(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE)
+                    .keepAlive(false)
+                    .send();
+        }
+
+        ResponseRecorder recorder = null;
+        boolean warmup = warmingUp;
+        if (responseCache != null && !warmup && ResponseCache.isCacheable(request)) {
+            Mono<Void> cached = responseCache.serve(request, response);
+            if (cached != null) {
+                request.receive().subscribe();
+                return cached;
+            }
+            if (request.method() == HttpMethod.GET) {
+                recorder = new ResponseRecorder().add(responseCache.target(request));
+            }
+        }
+
+        if (requestCoalescer != null && !warmup && request.method() == HttpMethod.GET && !hasBody(request)
+                && routeTable.isCoalesced(new QueryStringDecoder(request.uri()).path())) {
+            String key = RequestCoalescer.key(request);
+            if (key != null) {
+                final ResponseRecorder cacheRecorder = recorder;
+                Mono<Void> joined = requestCoalescer.join(key, response, () -> dispatch(request, response, cacheRecorder));
+                if (joined != null) {
+                    return joined;
+                }
+                RequestCoalescer.Flight flight = requestCoalescer.lead(key);
+                if (flight != null) {
+                    recorder = (recorder != null ? recorder : new ResponseRecorder()).add(flight);
+                    return dispatch(request, response, recorder).doFinally(signal -> flight.abandon());
+                }
+            }
+        }
+        return dispatch(request, response, recorder);
+    }
+
+    /**
+     * @param recorder 不需要记录响应时为 null
+     */
+    private Mono<Void> dispatch(HttpServerRequest request, HttpServerResponse response, ResponseRecorder recorder) {
+        final boolean warmup = warmingUp;
+        final BufferTracker.Ledger ledger = bufferTracker == null || warmup ? null : bufferTracker.open(route(request));
+        if (!hasBody(request) && routeTable.isNonBlocking(request.method().name(),
+                new QueryStringDecoder(request.uri()).path())) {
+            Mono<Void> inline = handleInline(request, response, recorder, ledger);
+            return ledger == null ? inline : inline.doFinally(signal -> ledger.close());
+        }
+
         //we have to close input stream, to emulate normal lifecycle
 
-        final InputStream requestData = new HttpContentInputStream(response.alloc(), request.receive().aggregate().asByteArray());
+        final InputStream requestData = new HttpContentInputStream(response.alloc(), requestContent(request),
+                contentBufferLimits, streamingRequest, ledger);
 
         final ContainerRequest containerRequest = nettyToJerseyBridge.bridgeRequest(request, requestData);
-        final ContainerResponseWriter containerResponse = nettyToJerseyBridge.bridgeResponse(response);
+        final NettyResponseWriter containerResponse = nettyToJerseyBridge.bridgeResponse(request, response,
+                responseChunkSize, responseCompression);
+        if (recorder != null) {
+            containerResponse.recordTo(recorder);
+        }
+        if (ledger != null) {
+            containerResponse.trackBuffersWith(ledger);
+        }
 
-        return Mono.<Void>create(sink -> {
+        final Mono<Void> dispatch;
+        if (disruptorDispatcher != null) {
+            dispatch = Mono.create(sink -> disruptorDispatcher.dispatch(containerRequest, containerResponse, requestData, sink));
+        } else {
+            final long enqueued = System.nanoTime();
+            //the connection may be gone before a worker picks the request up, whoever comes first owns requestData
+            final AtomicBoolean claimed = new AtomicBoolean();
+            //一个请求只提交一个任务，subscribeOn 还会再提交一次 request(n)，队列满时会把已经在处理的请求当成被拒绝
+            dispatch = Mono.<Void>create(sink -> scheduler.schedule(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                if (workerPool != null && !workerPool.admit(enqueued)) {
+                    sink.error(new RequestRejectedException("Request waited too long in the worker queue"));
+                    return;
+                }
+                handleRequest(containerRequest, containerResponse, requestData, sink, enqueued);
+            })).doOnCancel(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    try {
+                        requestData.close();
+                    } catch (IOException e) {
+                    }
+                }
+            });
+        }
+        Mono<Void> handled = dispatch
+                .onErrorResume(RequestRejectedException.class, e -> NettyResponseWriter.onEventLoop(response,
+                        () -> serviceUnavailable(request, response, requestData)))
+                //complete from the send itself, no worker thread waits for slow clients
+                .then(Mono.defer(containerResponse::completion))
+                .doOnCancel(containerResponse::cancel);
+        if (metrics != null && !warmup) {
+            handled = handled.doFinally(signal -> {
+                metrics.requestSize(((HttpContentInputStream) requestData).getReceivedBytes());
+                metrics.responseSize(containerResponse.getEntitySize());
+            });
+        }
+        if (ledger != null) {
+            handled = handled.doFinally(signal -> ledger.close());
+        }
+        return handled;
+    }
+
+    /**
+     * @return 方法和匹配的路径模板，用于归类 {@link BufferTracker} 记录的 ByteBuf
+     */
+    private String route(HttpServerRequest request) {
+        String method = request.method().name();
+        String template = routeTable.template(method, new QueryStringDecoder(request.uri()).path());
+        return method + " " + (template != null ? template : "(unmatched)");
+    }
+
+    /**
+     * @param enqueued 交给工作线程的时间
+     */
+    private void handleRequest(ContainerRequest containerRequest, NettyResponseWriter containerResponse,
+                               InputStream requestData, MonoSink<Void> sink, long enqueued) {
+        if (metrics != null && !warmingUp) {
+            metrics.queued(enqueued);
+        }
+        try {
+            application.handleRequest(containerRequest, containerResponse);
+            sink.success();
+        } catch (IOException | RuntimeException e) {
+            containerResponse.abort(e);
+            if (containerResponse.isConnectionClosed()) {
+                //客户端已经断开，读写失败是预期的；sink 已经或者马上会被取消，再发出错误只会被当作丢弃的错误抛出
+                logger.debug("Connection closed while handling request.", e);
+            } else {
+                //检查之后立即发出，日志放在后面，不给连接关闭留出时间
+                sink.error(e);
+                logger.error("Failed to handle request.", e);
+            }
+        } finally {
+            //close input stream and release all data we buffered, ignore errors
             try {
-                application.handleRequest(containerRequest, containerResponse);
-                sink.success();
+                requestData.close();
             } catch (IOException e) {
-                logger.error("Failed to handle request.", e);
-                sink.error(e);
-            } finally {
-                //close input stream and release all data we buffered, ignore errors
-                try {
-                    requestData.close();
-                } catch (IOException e) {
-                }
             }
-        }).subscribeOn(Schedulers.elastic());
+        }
+    }
+
+    /**
+     * 在 event loop 上直接执行 {@link NonBlocking} 的资源方法，响应在 finish 时一次交给 netty
+     */
+    private Mono<Void> handleInline(HttpServerRequest request, HttpServerResponse response, ResponseRecorder recorder,
+                                    BufferTracker.Ledger ledger) {
+        //no body is expected, just drain whatever the decoder still delivers
+        request.receive().subscribe();
+        ContainerRequest containerRequest = nettyToJerseyBridge.bridgeRequest(request, new ByteArrayInputStream(new byte[0]));
+        NettyResponseWriter containerResponse = nettyToJerseyBridge.bridgeResponse(request, response,
+                responseChunkSize, responseCompression);
+        if (recorder != null) {
+            containerResponse.recordTo(recorder);
+        }
+        if (ledger != null) {
+            containerResponse.trackBuffersWith(ledger);
+        }
+        try {
+            application.handleRequest(containerRequest, containerResponse);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to handle request.", e);
+            containerResponse.abort(e);
+            return Mono.error(e);
+        }
+        Mono<Void> completion = containerResponse.completion().doOnCancel(containerResponse::cancel);
+        if (metrics != null && !warmingUp) {
+            completion = completion.doFinally(signal -> metrics.responseSize(containerResponse.getEntitySize()));
+        }
+        return completion;
+    }
+
+    /**
+     * 开启压缩时解压 gzip/deflate 请求体，Jersey 看到的是解压后的内容，所以去掉 Content-Encoding 和 Content-Length
+     */
+    private Flux<ByteBuf> requestContent(HttpServerRequest request) {
+        Flux<ByteBuf> content = request.receive();
+        if (responseCompression == null) {
+            return content;
+        }
+        HttpHeaders headers = request.requestHeaders();
+        ZlibWrapper wrapper = RequestContentDecoder.wrapper(headers.get(HttpHeaderNames.CONTENT_ENCODING));
+        if (wrapper == null) {
+            return content;
+        }
+        headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+        headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+        return RequestContentDecoder.decode(content, wrapper, contentBufferLimits.getMaxContentLength());
+    }
+
+    private static boolean hasBody(HttpServerRequest request) {
+        HttpHeaders headers = request.requestHeaders();
+        return headers.getInt(HttpHeaderNames.CONTENT_LENGTH, 0) > 0
+                || headers.contains(HttpHeaderNames.TRANSFER_ENCODING);
+    }
+
+    /**
+     * 线程池队列已满或排队超时，直接返回 503，请求还没有交给 Jersey
+     */
+    private Mono<Void> serviceUnavailable(HttpServerRequest request, HttpServerResponse response, InputStream requestData) {
+        try {
+            requestData.close();
+        } catch (IOException e) {
+        }
+        // the unread body is discarded with the connection
+        return response.status(HttpResponseStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaderNames.RETRY_AFTER, String.valueOf(disruptorDispatcher != null
+                        ? disruptorDispatcher.getRetryAfterSeconds() : workerPool.getRetryAfterSeconds()))
+                .keepAlive(!hasBody(request) && request.isKeepAlive())
+                .send();
     }
 
     @PreDestroy
@@ -91,7 +410,22 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
             return;
         }
         logger.info("Stopped Jersey based request router.");
+        if (disruptorDispatcher != null) {
+            //先处理完 ring buffer 里的请求
+            disruptorDispatcher.dispose();
+        }
         application.destroy();
+        if (workerPool != null) {
+            workerPool.dispose();
+        } else if (virtualThreads) {
+            scheduler.dispose();
+        }
+        if (graphiteReporter != null) {
+            graphiteReporter.stop();
+        }
+        if (cacheCleanUp != null) {
+            cacheCleanUp.dispose();
+        }
         synchronized (this) {
             isShutdown = true;
         }
@@ -111,6 +445,24 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
         String classPath = "com.jersey";
         List<Class<?>> providerClass = Lists.newArrayList(MessageBodyReader.class, MessageBodyWriter.class);
         Set<Class<?>> providers = new HashSet<>(16);
+        boolean streamingRequest = false;
+        ContentBufferLimits contentBufferLimits = ContentBufferLimits.UNLIMITED;
+        int responseChunkSize = 16 * 1024;
+        WorkerPool workerPool;
+        boolean virtualThreads = false;
+        DisruptorDispatcher disruptorDispatcher;
+        Warmup warmup;
+        ResponseCompression responseCompression;
+        ResponseCache responseCache;
+        RequestCoalescer requestCoalescer;
+        BufferTracker bufferTracker;
+        MetricRegistry metricRegistry;
+        InetSocketAddress graphiteAddress;
+        String graphitePrefix;
+        long graphitePeriod;
+        TimeUnit graphitePeriodUnit;
+        JsonEngine jsonEngine;
+        List<JsonEngine> jsonEngines = new ArrayList<>();
 
         public Builder withClassPath(String classPath) {
             this.classPath = classPath;
@@ -129,6 +481,195 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
             return this;
         }
 
+        /**
+         * 开启后请求体边接收边交给 Jersey 解析，chunk 读完即释放，适合大请求体
+         *
+         * @param streamingRequest
+         * @return
+         */
+        public Builder withStreamingRequest(boolean streamingRequest) {
+            this.streamingRequest = streamingRequest;
+            return this;
+        }
+
+        /**
+         * 请求体大小上限，以及聚合模式下单请求内存阈值和全局内存预算，超过阈值的请求体转存到临时文件
+         *
+         * @param contentBufferLimits
+         * @return
+         */
+        public Builder withContentBufferLimits(ContentBufferLimits contentBufferLimits) {
+            this.contentBufferLimits = Preconditions.checkNotNull(contentBufferLimits);
+            return this;
+        }
+
+        /**
+         * 响应体按这个大小分块发送，不超过一个块的响应会带上 Content-Length 一次发送
+         *
+         * @param responseChunkSize
+         * @return
+         */
+        public Builder withResponseChunkSize(int responseChunkSize) {
+            Preconditions.checkArgument(responseChunkSize > 0, "responseChunkSize must be > 0");
+            this.responseChunkSize = responseChunkSize;
+            return this;
+        }
+
+        /**
+         * 使用有界线程池处理请求，队列满或排队超时的请求返回 503，默认使用 {@link Schedulers#elastic()}
+         *
+         * @param workerPool
+         * @return
+         */
+        public Builder withWorkerPool(WorkerPool workerPool) {
+            Preconditions.checkState(!virtualThreads && disruptorDispatcher == null,
+                    "disruptorDispatcher, workerPool and virtualThreads are mutually exclusive");
+            this.workerPool = Preconditions.checkNotNull(workerPool);
+            return this;
+        }
+
+        /**
+         * 每个请求在一个新的虚拟线程上处理，需要运行在 JDK 21+ 上，不能和 {@link #withWorkerPool(WorkerPool)} 同时使用
+         *
+         * @param virtualThreads
+         * @return
+         */
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            Preconditions.checkState(!virtualThreads || (workerPool == null && disruptorDispatcher == null),
+                    "disruptorDispatcher, workerPool and virtualThreads are mutually exclusive");
+            Preconditions.checkState(!virtualThreads || VirtualThreads.isSupported(), "Virtual threads require JDK 21 or later");
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * 使用 disruptor ring buffer 分发请求，ring buffer 满时返回 503，不能和工作线程池或虚拟线程同时使用
+         *
+         * @param disruptorDispatcher
+         * @return
+         */
+        public Builder withDisruptorDispatcher(DisruptorDispatcher disruptorDispatcher) {
+            Preconditions.checkState(workerPool == null && !virtualThreads,
+                    "disruptorDispatcher, workerPool and virtualThreads are mutually exclusive");
+            this.disruptorDispatcher = Preconditions.checkNotNull(disruptorDispatcher);
+            return this;
+        }
+
+        /**
+         * build 返回之前预热：预先构造 JSON 序列化器，并按配置重放请求直到延迟稳定
+         *
+         * @param warmup
+         * @return
+         */
+        public Builder withWarmup(Warmup warmup) {
+            this.warmup = Preconditions.checkNotNull(warmup);
+            return this;
+        }
+
+        /**
+         * 按 Accept-Encoding 压缩响应，并解压 gzip/deflate 请求体，默认不压缩
+         *
+         * @param responseCompression
+         * @return
+         */
+        public Builder withResponseCompression(ResponseCompression responseCompression) {
+            this.responseCompression = Preconditions.checkNotNull(responseCompression);
+            return this;
+        }
+
+        /**
+         * 在进程内缓存 GET 响应，命中时不经过 Jersey，见 {@link ResponseCache} 和 {@link CacheResponse}，默认不缓存
+         *
+         * @param responseCache
+         * @return
+         */
+        public Builder withResponseCache(ResponseCache responseCache) {
+            this.responseCache = Preconditions.checkNotNull(responseCache);
+            return this;
+        }
+
+        /**
+         * 合并 {@link CoalesceRequests} 标记的路由上同时到达的相同 GET 请求，见 {@link RequestCoalescer}，默认不合并
+         *
+         * @param requestCoalescer
+         * @return
+         */
+        public Builder withRequestCoalescing(RequestCoalescer requestCoalescer) {
+            this.requestCoalescer = Preconditions.checkNotNull(requestCoalescer);
+            return this;
+        }
+
+        /**
+         * 把请求处理的指标记录到 registry：每个资源方法的 timer 和 Dropwizard 注解声明的 meter，
+         * 以及请求耗时、正在处理的请求数、状态码、请求/响应大小和排队时间，见 {@link BridgeMetrics}，默认不记录
+         *
+         * @param metricRegistry
+         * @return
+         */
+        public Builder withMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = Preconditions.checkNotNull(metricRegistry);
+            return this;
+        }
+
+        /**
+         * 定期把 {@link #withMetricRegistry(MetricRegistry)} 里的所有指标发送到 Graphite，handler 停止时停止发送
+         *
+         * @param address Graphite 的 plaintext 端口
+         * @param prefix  指标名字的前缀，可以为 null
+         * @param period
+         * @param unit
+         * @return
+         */
+        public Builder withGraphiteReporting(InetSocketAddress address, String prefix, long period, TimeUnit unit) {
+            Preconditions.checkArgument(period > 0, "period must be > 0");
+            this.graphiteAddress = Preconditions.checkNotNull(address);
+            this.graphitePrefix = prefix;
+            this.graphitePeriod = period;
+            this.graphitePeriodUnit = Preconditions.checkNotNull(unit);
+            return this;
+        }
+
+        /**
+         * 排查内存泄漏时开启：记录每个请求持有的 ByteBuf，见 {@link BufferTracker}，有额外的同步开销，默认不记录
+         *
+         * @param bufferTracker
+         * @return
+         */
+        public Builder withBufferTracking(BufferTracker bufferTracker) {
+            this.bufferTracker = Preconditions.checkNotNull(bufferTracker);
+            return this;
+        }
+
+        /**
+         * 全局使用的 JSON 实现，会注册一个按 {@link UseJsonEngine} 选择实现的 provider，
+         * 不能再通过 {@link #addValueProvider(Class)} 注册 {@link JacksonProvider}
+         *
+         * @param jsonEngine
+         * @return
+         */
+        public Builder withJsonEngine(JsonEngine jsonEngine) {
+            this.jsonEngine = Preconditions.checkNotNull(jsonEngine);
+            return this;
+        }
+
+        /**
+         * 注册一个 {@link UseJsonEngine} 可以选择的实现实例，没有注册的实现用无参构造函数创建；
+         * 没有调用 {@link #withJsonEngine(JsonEngine)} 时默认使用 {@link JacksonJsonEngine}
+         *
+         * @param jsonEngine
+         * @return
+         */
+        public Builder addJsonEngine(JsonEngine jsonEngine) {
+            this.jsonEngines.add(Preconditions.checkNotNull(jsonEngine));
+            return this;
+        }
+
+        private static boolean isJacksonJsonProvider(Class<?> provider) {
+            return JacksonProvider.class.isAssignableFrom(provider)
+                    && !JacksonSmileProvider.class.isAssignableFrom(provider)
+                    && !JacksonCborProvider.class.isAssignableFrom(provider);
+        }
+
         public boolean supportProvider(Class<?> provider) {
             for (Class<?> clazz : providerClass) {
                 return clazz.isAssignableFrom(provider);
@@ -137,11 +678,30 @@ public class JerseyBasedHandler implements BiFunction<HttpServerRequest, HttpSer
         }
 
         public JerseyBasedHandler build() {
+            Preconditions.checkState(graphiteAddress == null || metricRegistry != null,
+                    "Graphite reporting requires a metricRegistry");
             ClassPathResourceConfig config = new ClassPathResourceConfig(this.classPath);
             if (!providers.isEmpty()) {
                 config.addValueProviderClass(providers);
             }
-            return new JerseyBasedHandler(config);
+            if (jsonEngine != null || !jsonEngines.isEmpty()) {
+                for (Class<?> provider : providers) {
+                    Preconditions.checkState(!isJacksonJsonProvider(provider),
+                            "JacksonProvider cannot be registered together with a JsonEngine");
+                }
+                config.getSingletons().add(new JsonProvider(
+                        jsonEngine != null ? jsonEngine : new JacksonJsonEngine(), jsonEngines));
+            }
+            JerseyBasedHandler handler = new JerseyBasedHandler(config, this);
+            if (warmup != null) {
+                try {
+                    handler.warmup(warmup);
+                } catch (RuntimeException e) {
+                    handler.stop();
+                    throw e;
+                }
+            }
+            return handler;
         }
     }
 }
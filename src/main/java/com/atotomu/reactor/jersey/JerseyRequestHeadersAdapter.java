@@ -0,0 +1,331 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 把 netty 的请求头以只读视图交给 Jersey，不复制：按名字读取时直接查 netty 的请求头，
+ * entrySet/keySet/values 是遍历时才读取的视图，同名的多个值合并成一个 entry。
+ * 不存在的请求头 {@link #get(Object)} 返回 null，和 Jersey 自己的 InBoundHeaders 一致。
+ * 一个请求只在一个线程上处理，不需要同步
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class JerseyRequestHeadersAdapter extends InBoundHeaders {
+
+    private static final long serialVersionUID = 2303297923762115950L;
+
+    private final HttpHeaders requestHeaders;
+    private transient Set<Map.Entry<String, List<String>>> entrySet;
+    private transient Set<String> keySet;
+    private transient Collection<List<String>> values;
+
+    JerseyRequestHeadersAdapter(HttpHeaders requestHeaders) {
+        this.requestHeaders = requestHeaders;
+    }
+
+    @Override
+    public void putSingleObject(String key, Object value) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    public void addObject(String key, Object value) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    public <A> List<A> get(String key, Class<A> type) {
+        if (!type.isAssignableFrom(String.class)) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        List<A> values = (List<A>) requestHeaders.getAll(key);
+        return values;
+    }
+
+    @Override
+    public <A> A getFirst(String key, Class<A> type) {
+        if (!type.isAssignableFrom(String.class)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        A value = (A) requestHeaders.get(key);
+        return value;
+    }
+
+    @Override
+    public <A> A getFirst(String key, A defaultValue) {
+        @SuppressWarnings("unchecked")
+        A value = (A) getFirst(key, defaultValue.getClass());
+        return null != value ? value : defaultValue;
+    }
+
+    @Override
+    public void putSingle(String key, String value) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    public void add(String key, String value) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    public String getFirst(String key) {
+        return requestHeaders.get(key);
+    }
+
+    @Override
+    protected List<String> getList(String key) {
+        return requestHeaders.getAll(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Iterator<Map.Entry<CharSequence, CharSequence>> entries = requestHeaders.iteratorCharSequence();
+        while (entries.hasNext()) {
+            if (value.equals(entries.next().getValue().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        List<String> values = requestHeaders.getAll(String.valueOf(key));
+        return values.isEmpty() ? null : values;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers."); // The API is sad
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (NameIterator names = new NameIterator(); names.hasNext(); names.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return requestHeaders.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return requestHeaders.contains(String.valueOf(key));
+    }
+
+    @Override
+    public List<String> put(String key, List<String> value) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers.");
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends List<String>> m) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers.");
+    }
+
+    @Override
+    public List<String> remove(Object key) {
+        throw new UnsupportedOperationException("No modifications allowed on request headers.");
+    }
+
+    @Override
+    public Set<Map.Entry<String, List<String>>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, List<String>>>() {
+                @Override
+                public Iterator<Map.Entry<String, List<String>>> iterator() {
+                    NameIterator names = new NameIterator();
+                    return new Iterator<Map.Entry<String, List<String>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, List<String>> next() {
+                            return new HeaderEntry(names.next());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return JerseyRequestHeadersAdapter.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new NameIterator();
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+
+                @Override
+                public int size() {
+                    return JerseyRequestHeadersAdapter.this.size();
+                }
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<List<String>> values() {
+        if (values == null) {
+            values = new AbstractCollection<List<String>>() {
+                @Override
+                public Iterator<List<String>> iterator() {
+                    NameIterator names = new NameIterator();
+                    return new Iterator<List<String>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public List<String> next() {
+                            return requestHeaders.getAll(names.next());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return JerseyRequestHeadersAdapter.this.size();
+                }
+            };
+        }
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return requestHeaders.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return requestHeaders.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return requestHeaders.toString();
+    }
+
+    /**
+     * 按出现顺序遍历不同的请求头名字，只分配一个记录已经出现过的名字的数组
+     */
+    private final class NameIterator implements Iterator<String> {
+        private final Iterator<Map.Entry<CharSequence, CharSequence>> entries = requestHeaders.iteratorCharSequence();
+        private final String[] seen = new String[requestHeaders.size()];
+        private int count;
+        private String next;
+
+        NameIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (entries.hasNext()) {
+                String name = entries.next().getKey().toString();
+                if (!isSeen(name)) {
+                    seen[count++] = name;
+                    next = name;
+                    return;
+                }
+            }
+        }
+
+        private boolean isSeen(String name) {
+            for (int i = 0; i < count; i++) {
+                if (seen[i].equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String name = next;
+            advance();
+            return name;
+        }
+    }
+
+    /**
+     * 取值时才读取同名的所有值
+     */
+    private final class HeaderEntry implements Map.Entry<String, List<String>> {
+        private final String name;
+        private List<String> values;
+
+        HeaderEntry(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getKey() {
+            return name;
+        }
+
+        @Override
+        public List<String> getValue() {
+            if (values == null) {
+                values = requestHeaders.getAll(name);
+            }
+            return values;
+        }
+
+        @Override
+        public List<String> setValue(List<String> value) {
+            throw new UnsupportedOperationException("No modifications allowed on request headers.");
+        }
+    }
+}
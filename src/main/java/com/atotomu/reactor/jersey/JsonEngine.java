@@ -0,0 +1,32 @@
+package com.atotomu.reactor.jersey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * JSON 序列化实现，通过 {@link JerseyBasedHandler.Builder#withJsonEngine(JsonEngine)} 全局指定，
+ * 或者在资源方法/请求体参数上用 {@link UseJsonEngine} 单独指定。参数和 MessageBodyReader/MessageBodyWriter 相同，
+ * media type 已经确认是 JSON。实现必须是线程安全的。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public interface JsonEngine {
+
+    boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations);
+
+    boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations);
+
+    /**
+     * 不能关闭 entityStream
+     */
+    Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, InputStream entityStream) throws IOException;
+
+    /**
+     * 不能关闭 entityStream
+     */
+    void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, OutputStream entityStream) throws IOException;
+}
@@ -0,0 +1,100 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.core.provider.AbstractMessageReaderWriterProvider;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按 {@link UseJsonEngine} 或全局默认选择 {@link JsonEngine} 的 JSON provider，
+ * 由 {@link JerseyBasedHandler.Builder#withJsonEngine(JsonEngine)} 注册，不能和 {@link JacksonProvider} 同时注册
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Provider
+@Consumes({MediaType.APPLICATION_JSON, "application/json;charset=UTF-8", "text/json"})
+@Produces({MediaType.APPLICATION_JSON, "application/json;charset=UTF-8", "text/json"})
+final class JsonProvider extends AbstractMessageReaderWriterProvider<Object> {
+
+    private final JsonEngine defaultEngine;
+    private final ConcurrentMap<Class<?>, JsonEngine> engines = new ConcurrentHashMap<>();
+
+    JsonProvider(JsonEngine defaultEngine, Collection<JsonEngine> engines) {
+        this.defaultEngine = Preconditions.checkNotNull(defaultEngine);
+        this.engines.put(defaultEngine.getClass(), defaultEngine);
+        for (JsonEngine engine : engines) {
+            this.engines.put(engine.getClass(), engine);
+        }
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isJsonType(mediaType) && engine(annotations).isReadable(type, genericType, annotations);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isJsonType(mediaType) && engine(annotations).isWriteable(type, genericType, annotations);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+        return engine(annotations).readFrom(type, genericType, annotations, entityStream);
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        engine(annotations).writeTo(value, type, genericType, annotations, entityStream);
+    }
+
+    /**
+     * 启动预热，目前只有 Jackson 需要预先构造序列化器
+     */
+    JacksonProvider jacksonProvider(Annotation[] annotations) {
+        JsonEngine engine = engine(annotations);
+        return engine instanceof JacksonJsonEngine ? ((JacksonJsonEngine) engine).provider() : null;
+    }
+
+    private JsonEngine engine(Annotation[] annotations) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof UseJsonEngine) {
+                    return engines.computeIfAbsent(((UseJsonEngine) annotation).value(), JsonProvider::newEngine);
+                }
+            }
+        }
+        return defaultEngine;
+    }
+
+    private static JsonEngine newEngine(Class<?> type) {
+        try {
+            return (JsonEngine) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + type.getName() + ", register an instance with Builder.addJsonEngine", e);
+        }
+    }
+
+    private static boolean isJsonType(MediaType mediaType) {
+        if (mediaType != null) {
+            String subtype = mediaType.getSubtype();
+            return "json".equalsIgnoreCase(subtype) || subtype.endsWith("+json");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.atotomu.reactor.jersey;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Metered;
+import com.codahale.metrics.annotation.Timed;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ResourceMethodDispatchAdapter;
+import com.sun.jersey.spi.container.ResourceMethodDispatchProvider;
+import com.sun.jersey.spi.dispatch.RequestDispatcher;
+
+import java.lang.reflect.Method;
+
+/**
+ * 给每个资源方法包一层计时：所有资源方法都有一个 timer，默认名字是 类名.方法名，{@link Timed} 可以改名；
+ * {@link Metered} 额外记录调用次数，{@link ExceptionMetered} 记录抛出的指定异常。
+ * 名字的规则和 Dropwizard 的注解一致：没有 absolute 时加上资源类名作为前缀。
+ * <p>
+ * 只统计资源方法本身的执行，返回 Mono/Flux 的资源方法只包括同步部分，整个请求的耗时见 {@link BridgeMetrics}。
+ * 启动预热期间暂停统计
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class MetricsDispatchAdapter implements ResourceMethodDispatchAdapter {
+
+    private final MetricRegistry registry;
+    private volatile boolean paused;
+
+    MetricsDispatchAdapter(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    void pause(boolean paused) {
+        this.paused = paused;
+    }
+
+    @Override
+    public ResourceMethodDispatchProvider adapt(ResourceMethodDispatchProvider provider) {
+        return resourceMethod -> {
+            RequestDispatcher dispatcher = provider.create(resourceMethod);
+            return dispatcher == null ? null : instrument(resourceMethod, dispatcher);
+        };
+    }
+
+    private RequestDispatcher instrument(AbstractResourceMethod resourceMethod, RequestDispatcher dispatcher) {
+        Method method = resourceMethod.getMethod();
+        Class<?> resource = resourceMethod.getResource().getResourceClass();
+
+        Timed timed = resourceMethod.getAnnotation(Timed.class);
+        Timer timer = registry.timer(timed == null ? MetricRegistry.name(resource, method.getName())
+                : name(timed.name(), timed.absolute(), resource, method));
+
+        Metered metered = resourceMethod.getAnnotation(Metered.class);
+        Meter meter = metered == null ? null
+                : registry.meter(name(metered.name(), metered.absolute(), resource, method));
+
+        ExceptionMetered exceptionMetered = resourceMethod.getAnnotation(ExceptionMetered.class);
+        Meter exceptions = exceptionMetered == null ? null : registry.meter(exceptionMetered.name().isEmpty()
+                ? MetricRegistry.name(resource, method.getName(), ExceptionMetered.DEFAULT_NAME_SUFFIX)
+                : name(exceptionMetered.name(), exceptionMetered.absolute(), resource, method));
+        Class<? extends Throwable> cause = exceptionMetered == null ? null : exceptionMetered.cause();
+
+        return (resourceInstance, context) -> {
+            if (paused) {
+                dispatcher.dispatch(resourceInstance, context);
+                return;
+            }
+            if (meter != null) {
+                meter.mark();
+            }
+            Timer.Context time = timer.time();
+            try {
+                dispatcher.dispatch(resourceInstance, context);
+            } catch (RuntimeException e) {
+                //Jersey wraps exceptions thrown by the resource method in MappableContainerException
+                if (exceptions != null && (cause.isInstance(e) || cause.isInstance(e.getCause()))) {
+                    exceptions.mark();
+                }
+                throw e;
+            } finally {
+                time.stop();
+            }
+        };
+    }
+
+    private static String name(String explicitName, boolean absolute, Class<?> resource, Method method) {
+        if (explicitName.isEmpty()) {
+            return MetricRegistry.name(resource, method.getName());
+        }
+        return absolute ? explicitName : MetricRegistry.name(resource, explicitName);
+    }
+}
@@ -0,0 +1,282 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.AsciiString;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * 把 Jersey 的响应写到 reactor-netty 的 {@link HttpServerResponse}，响应体按 chunk 流式发送
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+class NettyResponseWriter implements ContainerResponseWriter {
+    private static final Logger logger = LoggerFactory.getLogger(NettyResponseWriter.class);
+    private static final Map<String, AsciiString> COMMON_NAMES = commonNames();
+    private static final AtomicIntegerFieldUpdater<NettyResponseWriter> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(NettyResponseWriter.class, "state");
+    private static final int WRITING = 0;
+    private static final int FINISHED = 1;
+    private static final int SENT = 2;
+    private static final int CANCELLED = 3;
+
+    private final HttpServerResponse serverResponse;
+    private final int chunkSize;
+    private final ResponseCompression compression;
+    private final ResponseCompression.ContentEncoding acceptedEncoding;
+    private ResponseRecorder recorder;
+    private BufferTracker.Ledger ledger;
+    private ChunkedResponseOutputStream entityStream;
+    private volatile boolean suspended;
+    private volatile Disposable pendingResult;
+    private MonoProcessor<Void> resumed;
+    private volatile Mono<Void> streamed;
+    private volatile int state;
+
+    NettyResponseWriter(HttpServerResponse serverResponse, int chunkSize) {
+        this(serverResponse, chunkSize, null, null);
+    }
+
+    /**
+     * @param compression      不压缩时为 null
+     * @param acceptedEncoding 客户端接受的编码，不接受压缩时为 null
+     */
+    NettyResponseWriter(HttpServerResponse serverResponse, int chunkSize,
+                        ResponseCompression compression, ResponseCompression.ContentEncoding acceptedEncoding) {
+        this.serverResponse = serverResponse;
+        this.chunkSize = chunkSize;
+        this.compression = compression;
+        this.acceptedEncoding = acceptedEncoding;
+    }
+
+    @Override
+    public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("entity = " + response.getEntity());
+        }
+        writeStatusAndHeaders(response.getStatus(), response.getHttpHeaders().entrySet());
+        ResponseCompression.ContentEncoding encoding = null;
+        if (compression != null && compression.isCompressible(response.getHttpHeaders())) {
+            //不管这次是否压缩，缓存都要按 Accept-Encoding 区分
+            serverResponse.addHeader(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+            encoding = acceptedEncoding;
+        }
+        boolean head = "HEAD".equals(response.getContainerRequest().getMethod());
+        entityStream = new ChunkedResponseOutputStream(serverResponse, chunkSize, contentLength, head, compression, encoding);
+        if (recorder != null && recorder.start(response)) {
+            entityStream.recordTo(recorder);
+        }
+        if (ledger != null) {
+            entityStream.trackBuffersWith(ledger);
+        }
+        return entityStream;
+    }
+
+    /**
+     * 响应可以缓存时把发送的数据交给 recorder，在 Jersey 处理请求之前调用
+     */
+    void recordTo(ResponseRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * 记录响应的发送缓冲，在 Jersey 处理请求之前调用，见 {@link BufferTracker}
+     */
+    void trackBuffersWith(BufferTracker.Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    private void writeStatusAndHeaders(int status, Iterable<Map.Entry<String, List<Object>>> headers) {
+        serverResponse.status(status);
+        writeHeaders(serverResponse.responseHeaders(), headers);
+    }
+
+    /**
+     * 直接写到 netty 的响应头里，替换已有的响应头。常用的名字换成 {@link HttpHeaderNames} 里的 AsciiString，
+     * 编码时直接复制字节，不用逐个字符转换
+     */
+    static void writeHeaders(HttpHeaders target, Iterable<Map.Entry<String, List<Object>>> headers) {
+        target.clear();
+        for (Map.Entry<String, List<Object>> header : headers) {
+            CharSequence name = COMMON_NAMES.get(header.getKey());
+            if (name == null) {
+                name = header.getKey();
+            }
+            List<Object> values = header.getValue();
+            if (values.size() == 1) {
+                target.add(name, values.get(0));
+            } else {
+                target.add(name, values);
+            }
+        }
+    }
+
+    private static Map<String, AsciiString> commonNames() {
+        Map<String, AsciiString> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Field field : HttpHeaderNames.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == AsciiString.class) {
+                try {
+                    AsciiString name = (AsciiString) field.get(null);
+                    names.put(name.toString(), name);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return Jersey 写出的响应体字节数（压缩前），以流的方式写出或者没有写出响应时为 -1，在 {@link #completion()} 之后调用
+     */
+    long getEntitySize() {
+        return entityStream == null ? -1 : entityStream.getWritten();
+    }
+
+    /**
+     * 挂起的响应以流的方式写出：content 的每个元素单独 flush，channel 不可写时 netty 暂停向 content 请求数据，
+     * 连接关闭时取消 content。在 {@link #resume()} 之前调用
+     */
+    void stream(int status, Iterable<Map.Entry<String, List<Object>>> headers, Publisher<ByteBuf> content) {
+        writeStatusAndHeaders(status, headers);
+        serverResponse.chunkedTransfer(true);
+        streamed = serverResponse.options(NettyPipeline.SendOptions::flushOnEach).send(content).then();
+    }
+
+    ByteBufAllocator alloc() {
+        return serverResponse.alloc();
+    }
+
+    /**
+     * 剩余数据留到 {@link #completion()} 被订阅时才交给 netty，见 {@link #onEventLoop(HttpServerResponse, Supplier)}
+     */
+    @Override
+    public void finish() throws IOException {
+        if (!STATE.compareAndSet(this, WRITING, FINISHED)) {
+            //连接已经关闭，不会再有人订阅 completion
+            entityStream.abort(new IOException("Connection closed by peer"));
+        }
+        logger.trace("send finish ......");
+    }
+
+    /**
+     * 把 {@link #finish()} 留下的数据交给 netty，不等待发送完成，工作线程在 Jersey 返回后立即释放
+     *
+     * @return 响应全部写出后完成，Jersey 没有写出响应时为空；挂起的响应要等异步结果写出之后才完成
+     */
+    Mono<Void> completion() {
+        if (suspended) {
+            return resumed.then(onEventLoop(serverResponse, () -> streamed != null ? streamed : send()));
+        }
+        return onEventLoop(serverResponse, this::send);
+    }
+
+    /**
+     * 在连接的 event loop 上订阅 send。reactor-netty 在 handler 结束之后才写 LastHttpContent 并解除当前请求的绑定，
+     * 如果响应体已经发出而 handler 在其他线程上结束，keep-alive 的客户端可能在这之间发来下一个请求，
+     * 被 reactor-netty 当作 pipelined 请求丢掉。在 event loop 上发送时写完、handler 结束和 LastHttpContent 在同一个任务里
+     *
+     * @param send 最后一次发送，结束时 handler 也结束
+     */
+    static Mono<Void> onEventLoop(HttpServerResponse response, Supplier<? extends Mono<Void>> send) {
+        return Mono.defer(() -> {
+            EventLoop eventLoop = response.context().channel().eventLoop();
+            return eventLoop.inEventLoop() ? send.get() : Mono.defer(send).subscribeOn(Schedulers.fromExecutor(eventLoop));
+        });
+    }
+
+    private Mono<Void> send() {
+        if (entityStream == null) {
+            return Mono.empty();
+        }
+        if (!STATE.compareAndSet(this, FINISHED, SENT)) {
+            return entityStream.completion();
+        }
+        try {
+            return entityStream.finish();
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * 资源方法返回了异步结果，Jersey 返回时响应还没有写出，必须在 Jersey 返回之前调用
+     */
+    void suspend() {
+        resumed = MonoProcessor.create();
+        suspended = true;
+    }
+
+    /**
+     * @param subscription 对异步结果的订阅，连接关闭时取消
+     */
+    void pendingResult(Disposable subscription) {
+        pendingResult = subscription;
+    }
+
+    /**
+     * 异步结果已经写出
+     */
+    void resume() {
+        resumed.onComplete();
+    }
+
+    /**
+     * 连接已经关闭，取消还没有产生的异步结果，释放 Jersey 写完但还没有交给 netty 的数据
+     */
+    void cancel() {
+        Disposable subscription = pendingResult;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (STATE.compareAndSet(this, FINISHED, CANCELLED)) {
+            entityStream.abort(new IOException("Connection closed by peer"));
+        } else {
+            //Jersey 还在写，由 finish 释放
+            STATE.compareAndSet(this, WRITING, CANCELLED);
+        }
+    }
+
+    /**
+     * @return 连接已经关闭，handler 的订阅已经或者马上会被取消
+     */
+    boolean isConnectionClosed() {
+        return state == CANCELLED || !serverResponse.context().channel().isActive();
+    }
+
+    /**
+     * Jersey 没能正常结束响应时调用，释放已缓冲的数据，已经开始发送的响应会中断连接
+     */
+    void abort(Throwable error) {
+        if (entityStream != null) {
+            entityStream.abort(error);
+        }
+        if (suspended) {
+            resumed.onError(error);
+        }
+    }
+}
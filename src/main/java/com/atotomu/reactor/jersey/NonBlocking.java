@@ -0,0 +1,21 @@
+package com.atotomu.reactor.jersey;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记不会阻塞的资源类或资源方法，没有请求体时直接在 netty event loop 上执行，省去切换到工作线程的开销。
+ * <p>
+ * 被标记的方法不能做任何阻塞操作（IO、锁、sleep），否则会阻塞同一个 event loop 上的所有连接。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface NonBlocking {
+}
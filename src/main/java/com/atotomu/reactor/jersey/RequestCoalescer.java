@@ -0,0 +1,249 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.spi.container.ContainerResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.ipc.netty.http.server.HttpServerRequest;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合并同时到达的相同 GET 请求（single-flight）：{@link CoalesceRequests} 标记的路由上，按 URI 和
+ * Accept、Accept-Encoding、Accept-Language 区分，同一时间只有第一个请求交给 Jersey，
+ * 其它请求等待它的响应，拿到同一份响应数据的 retained duplicate 直接发送。
+ * <p>
+ * 带 Authorization 或 Cookie 的请求、带 Set-Cookie 或者超过 maxResponseSize 的响应不合并；
+ * 第一个请求的响应没能共享（流式响应、出错中断）时，等待的请求各自交给 Jersey。
+ * 和 {@link ResponseCache} 一起使用时，缓存过期的瞬间只有一个请求会执行资源方法。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class RequestCoalescer {
+
+    private final int maxResponseSize;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 共享的响应最大 1MB
+     */
+    public RequestCoalescer() {
+        this(1024 * 1024);
+    }
+
+    /**
+     * @param maxResponseSize 超过这个大小的响应不共享，等待的请求各自处理
+     */
+    public RequestCoalescer(int maxResponseSize) {
+        Preconditions.checkArgument(maxResponseSize > 0, "maxResponseSize must be > 0");
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    public int getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    /**
+     * @return 等待了其它请求的响应的请求数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 作为第一个请求交给 Jersey 处理、其它相同请求可以等待的请求数，抢先失败不合并的请求不计算在内
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 正在处理的不同请求数
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * @return 不能合并的请求返回 null
+     */
+    static String key(HttpServerRequest request) {
+        HttpHeaders headers = request.requestHeaders();
+        if (headers.contains(HttpHeaderNames.AUTHORIZATION) || headers.contains(HttpHeaderNames.COOKIE)) {
+            return null;
+        }
+        return request.uri()
+                + '\n' + headers.getAll(HttpHeaderNames.ACCEPT)
+                + '\n' + headers.getAll(HttpHeaderNames.ACCEPT_ENCODING)
+                + '\n' + headers.getAll(HttpHeaderNames.ACCEPT_LANGUAGE);
+    }
+
+    /**
+     * 相同的请求正在处理时等待它的响应
+     *
+     * @param fallback 响应不能共享时自己处理
+     * @return 没有正在处理的相同请求时为 null
+     */
+    Mono<Void> join(String key, HttpServerResponse response, Supplier<Mono<Void>> fallback) {
+        Flight flight = flights.get(key);
+        if (flight == null || !flight.hold()) {
+            return null;
+        }
+        hits.increment();
+        return flight.completion()
+                .flatMap(completed -> completed.body == null ? fallback.get()
+                        : NettyResponseWriter.onEventLoop(response, () -> completed.send(response)))
+                .doFinally(signal -> flight.leave());
+    }
+
+    /**
+     * 当前请求交给 Jersey 处理，返回的 flight 需要加到响应的 {@link ResponseRecorder}，
+     * 请求结束时调用 {@link Flight#abandon()}
+     *
+     * @return 同时有另一个相同的请求抢先开始时为 null，当前请求不合并
+     */
+    Flight lead(String key) {
+        Flight flight = new Flight(key);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return null;
+        }
+        misses.increment();
+        return flight;
+    }
+
+    /**
+     * 一次交给 Jersey 的处理，body 由 flight 持有，直到所有等待的请求发送结束
+     */
+    final class Flight implements ResponseRecorder.Target {
+        private final String key;
+        private List<MonoSink<Flight>> waiters = new ArrayList<>();
+        private boolean done;
+        private int holders;
+        private HttpResponseStatus status;
+        private HttpHeaders headers;
+        /**
+         * 结束后为 null 表示响应不能共享
+         */
+        private ByteBuf body;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public int maxSize() {
+            return maxResponseSize;
+        }
+
+        @Override
+        public boolean start(ContainerResponse response) {
+            return !response.getHttpHeaders().containsKey(HttpHeaderNames.SET_COOKIE.toString());
+        }
+
+        @Override
+        public void recorded(HttpResponseStatus status, HttpHeaders headers, ByteBuf body) {
+            complete(status, headers, body.retain());
+        }
+
+        @Override
+        public void discarded() {
+            abandon();
+        }
+
+        /**
+         * 请求结束时调用，响应已经共享时没有作用
+         */
+        void abandon() {
+            complete(null, null, null);
+        }
+
+        private void complete(HttpResponseStatus status, HttpHeaders headers, ByteBuf body) {
+            //之后到达的相同请求重新开始
+            flights.remove(key, this);
+            List<MonoSink<Flight>> completed;
+            synchronized (this) {
+                if (done) {
+                    if (body != null) {
+                        body.release();
+                    }
+                    return;
+                }
+                done = true;
+                this.status = status;
+                this.headers = headers;
+                if (body != null && holders == 0) {
+                    body.release();
+                } else {
+                    this.body = body;
+                }
+                completed = waiters;
+                waiters = null;
+            }
+            for (MonoSink<Flight> waiter : completed) {
+                waiter.success(this);
+            }
+        }
+
+        /**
+         * @return 已经结束时返回 false
+         */
+        synchronized boolean hold() {
+            if (done) {
+                return false;
+            }
+            holders++;
+            return true;
+        }
+
+        void leave() {
+            ByteBuf released = null;
+            synchronized (this) {
+                if (--holders == 0 && done) {
+                    released = body;
+                    body = null;
+                }
+            }
+            if (released != null) {
+                released.release();
+            }
+        }
+
+        private Mono<Flight> completion() {
+            return Mono.create(sink -> {
+                boolean completed;
+                synchronized (this) {
+                    completed = done;
+                    if (!completed) {
+                        waiters.add(sink);
+                    }
+                }
+                if (completed) {
+                    sink.success(this);
+                }
+            });
+        }
+
+        /**
+         * 调用方持有 flight，body 不会被释放
+         */
+        private Mono<Void> send(HttpServerResponse response) {
+            response.status(status)
+                    .headers(headers)
+                    .header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(body.readableBytes()));
+            return response.send(Mono.just(body.retainedDuplicate())).then();
+        }
+    }
+}
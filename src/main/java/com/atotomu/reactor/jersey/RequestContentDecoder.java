@@ -0,0 +1,225 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+
+import javax.ws.rs.WebApplicationException;
+
+/**
+ * 在请求体交给 {@link HttpContentInputStream} 之前解压 gzip/deflate，和 netty 的 HttpContentDecompressor 一样用
+ * EmbeddedChannel 里的 zlib 解码器。每个输入 chunk 对应一个输出 chunk（可能为空），不改变下游的请求数量。
+ * <p>
+ * 解压过程中就检查 maxContentLength：按剩余的额度切分输入，每次最多多解压出 {@link #MIN_SLICE} * {@link #MAX_DEFLATE_RATIO} 字节，
+ * 高压缩比的小 chunk 不会一次膨胀到超过限制，超过时以 413 结束。数据损坏或者被截断（没有读到压缩流的结尾或 gzip 的 trailer）时以 400 结束
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class RequestContentDecoder implements CoreSubscriber<ByteBuf>, Subscription {
+
+    /**
+     * deflate 的最大压缩比
+     */
+    static final int MAX_DEFLATE_RATIO = 1032;
+    /**
+     * 额度快用完时每次交给解码器的最少输入字节数
+     */
+    static final int MIN_SLICE = 64;
+
+    private final CoreSubscriber<? super ByteBuf> actual;
+    private final ZlibDecoder zlib;
+    private final EmbeddedChannel decoder;
+    private final long maxContentLength;
+    private Subscription upstream;
+    private boolean done;
+    private boolean received;
+    private long inflated;
+
+    private RequestContentDecoder(CoreSubscriber<? super ByteBuf> actual, ZlibWrapper wrapper, long maxContentLength) {
+        this.actual = actual;
+        this.zlib = ZlibCodecFactory.newZlibDecoder(wrapper);
+        this.decoder = new EmbeddedChannel(zlib);
+        this.maxContentLength = maxContentLength;
+    }
+
+    /**
+     * @return 不支持的编码返回 null
+     */
+    static ZlibWrapper wrapper(String contentEncoding) {
+        if ("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)) {
+            return ZlibWrapper.GZIP;
+        }
+        if ("deflate".equalsIgnoreCase(contentEncoding) || "x-deflate".equalsIgnoreCase(contentEncoding)) {
+            // 有的客户端发送不带 zlib 头的 raw deflate
+            return ZlibWrapper.ZLIB_OR_NONE;
+        }
+        return null;
+    }
+
+    static Flux<ByteBuf> decode(Flux<ByteBuf> content, ZlibWrapper wrapper) {
+        return decode(content, wrapper, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxContentLength 解压后的最大长度
+     */
+    static Flux<ByteBuf> decode(Flux<ByteBuf> content, ZlibWrapper wrapper, long maxContentLength) {
+        return Flux.from(Operators.<ByteBuf, ByteBuf>lift((scannable, actual) ->
+                new RequestContentDecoder(actual, wrapper, maxContentLength)).apply(content));
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(upstream, s)) {
+            upstream = s;
+            actual.onSubscribe(this);
+        }
+    }
+
+    @Override
+    public void onNext(ByteBuf chunk) {
+        ByteBuf decoded;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            try {
+                decoded = inflate(chunk);
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                release();
+                actual.onError(e instanceof WebApplicationException ? e : badRequest(e));
+                return;
+            }
+        }
+        try {
+            actual.onNext(decoded);
+        } finally {
+            decoded.release();
+        }
+    }
+
+    /**
+     * 剩余额度足够时整个 chunk 一次解压，快用完时切成小段，每段之后检查解压出的长度
+     */
+    private ByteBuf inflate(ByteBuf chunk) {
+        ByteBuf decoded = Unpooled.EMPTY_BUFFER;
+        int offset = chunk.readerIndex();
+        int end = chunk.writerIndex();
+        try {
+            while (offset < end) {
+                received = true;
+                int slice = (int) Math.min(end - offset, Math.max(MIN_SLICE, (maxContentLength - inflated) / MAX_DEFLATE_RATIO));
+                //解码器会释放输入，reactor-netty 在 onNext 返回后释放原来的 chunk
+                decoder.writeInbound(chunk.retainedSlice(offset, slice));
+                offset += slice;
+                for (ByteBuf next = decoder.readInbound(); next != null; next = decoder.readInbound()) {
+                    inflated += next.readableBytes();
+                    decoded = append(decoded, next);
+                }
+                if (inflated > maxContentLength) {
+                    throw new WebApplicationException(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code());
+                }
+            }
+            return decoded;
+        } catch (RuntimeException e) {
+            decoded.release();
+            throw e;
+        }
+    }
+
+    private static ByteBuf append(ByteBuf decoded, ByteBuf next) {
+        if (decoded == Unpooled.EMPTY_BUFFER) {
+            return next;
+        }
+        CompositeByteBuf composite;
+        if (decoded instanceof CompositeByteBuf) {
+            composite = (CompositeByteBuf) decoded;
+        } else {
+            composite = decoded.alloc().compositeBuffer(Integer.MAX_VALUE);
+            composite.addComponent(true, decoded);
+        }
+        return composite.addComponent(true, next);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            release();
+        }
+        actual.onError(t);
+    }
+
+    /**
+     * 结束时解码器检查剩余的数据，损坏的请求体也可能在这里才发现；压缩流没有结束说明请求体被截断了，
+     * 完全没有请求体时按空的请求体处理
+     */
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                decoder.checkException();
+                if (received && !zlib.isClosed()) {
+                    throw new DecompressionException("Truncated compressed request body");
+                }
+                if (decoder.finish()) {
+                    decoder.releaseInbound();
+                }
+            } catch (RuntimeException e) {
+                release();
+                actual.onError(badRequest(e));
+                return;
+            }
+        }
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        upstream.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        upstream.cancel();
+        synchronized (this) {
+            if (!done) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * 解码器的输出都在 onNext 里交给了下游，只需要释放剩余的状态，已经出错的数据不再关心
+     */
+    private void release() {
+        done = true;
+        try {
+            decoder.finishAndReleaseAll();
+        } catch (RuntimeException e) {
+            // the stream is abandoned anyway
+        }
+    }
+
+    private static WebApplicationException badRequest(Throwable cause) {
+        return new WebApplicationException(cause, HttpResponseStatus.BAD_REQUEST.code());
+    }
+}
@@ -0,0 +1,20 @@
+package com.atotomu.reactor.jersey;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 请求还没有交给 Jersey 就被 {@link WorkerPool} 或 {@link DisruptorDispatcher} 拒绝：队列满、排队超时或 ring buffer 满。
+ * 只有这种拒绝返回 503，资源方法自己抛出的 {@link RejectedExecutionException} 仍然按普通异常处理。
+ * <p>
+ * 继承 RejectedExecutionException，线程池的拒绝策略按约定抛出这个类型
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class RequestRejectedException extends RejectedExecutionException {
+    private static final long serialVersionUID = 6296014912154588024L;
+
+    RequestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,363 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.sun.jersey.spi.container.ContainerResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.IllegalReferenceCountException;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.http.server.HttpServerRequest;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * 进程内的 GET 响应缓存，命中时在 event loop 上直接返回，不经过 Jersey 和序列化：
+ * <ul>
+ * <li>按方法、URI 和响应声明的 Vary 请求头区分，HEAD 使用 GET 的缓存；</li>
+ * <li>只缓存 200 响应，时间取资源方法的 {@link CacheResponse}，否则取响应 Cache-Control 的 s-maxage/max-age，
+ * 带 no-store/no-cache/private、Set-Cookie 或者 Vary: * 的响应即使有 {@link CacheResponse} 也不缓存；</li>
+ * <li>过期的条目在再次请求时或者 {@link #cleanUp()} 时删除并释放内存；</li>
+ * <li>缓存实际发送的字节（包括压缩后的内容），放在堆外内存里，总大小超过 maxBytes 时按最近最少使用淘汰；</li>
+ * <li>没有 ETag 的响应按内容生成，命中时 If-None-Match 匹配返回 304。</li>
+ * </ul>
+ * 带 Authorization 或者 Cache-Control: no-cache 的请求不读缓存。同一个实例在所有请求之间共享。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class ResponseCache {
+
+    private final int maxEntrySize;
+    private final Cache<String, Entry> entries;
+    /**
+     * GET + URI 到最近一次响应声明的 Vary 请求头
+     */
+    private final Cache<String, List<String>> varyNames;
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 单个响应最大 1MB
+     *
+     * @param maxBytes 缓存内容的总大小（字节）
+     */
+    public ResponseCache(long maxBytes) {
+        this(maxBytes, 1024 * 1024);
+    }
+
+    /**
+     * @param maxBytes     缓存内容的总大小（字节）
+     * @param maxEntrySize 超过这个大小的响应不缓存
+     */
+    public ResponseCache(long maxBytes, int maxEntrySize) {
+        Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+        Preconditions.checkArgument(maxEntrySize > 0, "maxEntrySize must be > 0");
+        this.maxEntrySize = maxEntrySize;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.body.capacity())
+                .removalListener((RemovalNotification<String, Entry> removed) -> {
+                    size.addAndGet(-removed.getValue().body.capacity());
+                    removed.getValue().body.release();
+                })
+                .build();
+        this.varyNames = CacheBuilder.newBuilder().maximumSize(10000).build();
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * @return 缓存内容占用的堆外内存（字节）
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * 删除所有过期的条目，释放堆外内存。过期的条目不再被请求时只能这样释放，需要定期调用
+     */
+    public void cleanUp() {
+        entries.asMap().values().removeIf(Entry::isExpired);
+        entries.cleanUp();
+    }
+
+    /**
+     * 可以读缓存的请求
+     */
+    static boolean isCacheable(HttpServerRequest request) {
+        HttpMethod method = request.method();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return false;
+        }
+        HttpHeaders headers = request.requestHeaders();
+        if (headers.contains(HttpHeaderNames.AUTHORIZATION)) {
+            return false;
+        }
+        String cacheControl = headers.get(HttpHeaderNames.CACHE_CONTROL);
+        return cacheControl == null || !(cacheControl.contains("no-cache") || cacheControl.contains("no-store"));
+    }
+
+    /**
+     * 在 event loop 上返回缓存的响应
+     *
+     * @return 没有命中时为 null
+     */
+    Mono<Void> serve(HttpServerRequest request, HttpServerResponse response) {
+        String primaryKey = primaryKey(request.uri());
+        List<String> vary = varyNames.getIfPresent(primaryKey);
+        String key = vary == null ? null : variantKey(primaryKey, vary, request.requestHeaders());
+        Entry entry = key == null ? null : entries.getIfPresent(key);
+        if (entry != null && entry.isExpired()) {
+            entries.asMap().remove(key, entry);
+            entry = null;
+        }
+        ByteBuf body = entry == null ? null : entry.retainBody();
+        if (body == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        response.status(HttpResponseStatus.OK)
+                .headers(entry.headers)
+                .header(HttpHeaderNames.AGE, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - entry.storedAt)));
+        if (matches(request.requestHeaders().get(HttpHeaderNames.IF_NONE_MATCH), entry.etag)) {
+            body.release();
+            response.status(HttpResponseStatus.NOT_MODIFIED);
+            response.responseHeaders().remove(HttpHeaderNames.CONTENT_TYPE).remove(HttpHeaderNames.CONTENT_ENCODING);
+            return response.send();
+        }
+        response.header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(body.readableBytes()));
+        if (request.method() == HttpMethod.HEAD) {
+            body.release();
+            return response.send();
+        }
+        return response.send(Mono.just(body)).then();
+    }
+
+    /**
+     * 没有命中的 GET 请求记录响应，响应可以缓存时保存
+     */
+    ResponseRecorder.Target target(HttpServerRequest request) {
+        return new Store(primaryKey(request.uri()), request.requestHeaders());
+    }
+
+    /**
+     * @return 缓存的秒数，不能缓存时为 0
+     */
+    static int maxAge(ContainerResponse response) {
+        if (response.getStatus() != HttpResponseStatus.OK.code()
+                || response.getHttpHeaders().containsKey(HttpHeaderNames.SET_COOKIE.toString())) {
+            return 0;
+        }
+        List<Object> vary = response.getHttpHeaders().get(HttpHeaderNames.VARY.toString());
+        if (vary != null && vary.toString().contains("*")) {
+            return 0;
+        }
+        List<Object> values = response.getHttpHeaders().get(HttpHeaderNames.CACHE_CONTROL.toString());
+        String cacheControl = values == null || values.isEmpty() ? null : Joiner.on(',').join(values);
+        //资源方法只决定缓存多久，响应自己声明不能共享时仍然不缓存
+        if (cacheControl != null && forbidsSharedCache(cacheControl)) {
+            return 0;
+        }
+        for (Annotation annotation : response.getAnnotations()) {
+            if (annotation instanceof CacheResponse) {
+                return Math.max(((CacheResponse) annotation).maxAge(), 0);
+            }
+        }
+        return cacheControl == null ? 0 : maxAge(cacheControl);
+    }
+
+    /**
+     * @return 带 no-store、no-cache 或 private
+     */
+    static boolean forbidsSharedCache(String cacheControl) {
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim().toLowerCase();
+            if (directive.equals("no-store") || directive.startsWith("no-cache") || directive.startsWith("private")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int maxAge(String cacheControl) {
+        if (forbidsSharedCache(cacheControl)) {
+            return 0;
+        }
+        int maxAge = 0;
+        int sharedMaxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim().toLowerCase();
+            try {
+                if (directive.startsWith("s-maxage=")) {
+                    sharedMaxAge = Integer.parseInt(directive.substring("s-maxage=".length()));
+                } else if (directive.startsWith("max-age=")) {
+                    maxAge = Integer.parseInt(directive.substring("max-age=".length()));
+                }
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return Math.max(sharedMaxAge >= 0 ? sharedMaxAge : maxAge, 0);
+    }
+
+    private void store(String primaryKey, HttpHeaders requestHeaders, HttpHeaders responseHeaders, ByteBuf body, int maxAge) {
+        HttpHeaders headers = new DefaultHttpHeaders().add(responseHeaders);
+        String etag = headers.get(HttpHeaderNames.ETAG);
+        if (etag == null) {
+            CRC32 crc = new CRC32();
+            crc.update(body.nioBuffer());
+            etag = "\"" + Integer.toHexString(body.readableBytes()) + "-" + Long.toHexString(crc.getValue()) + "\"";
+            headers.set(HttpHeaderNames.ETAG, etag);
+        }
+        List<String> vary = varyNames(headers);
+        Entry entry = new Entry(headers, body.retain(), etag, System.nanoTime(), TimeUnit.SECONDS.toNanos(maxAge));
+        size.addAndGet(body.capacity());
+        varyNames.put(primaryKey, vary);
+        entries.put(variantKey(primaryKey, vary, requestHeaders), entry);
+    }
+
+    private static String primaryKey(String uri) {
+        return "GET " + uri;
+    }
+
+    private static String variantKey(String primaryKey, List<String> vary, HttpHeaders requestHeaders) {
+        if (vary.isEmpty()) {
+            return primaryKey;
+        }
+        StringBuilder key = new StringBuilder(primaryKey);
+        for (String name : vary) {
+            key.append('\n').append(name).append(':').append(requestHeaders.getAll(name));
+        }
+        return key.toString();
+    }
+
+    private static List<String> varyNames(HttpHeaders headers) {
+        List<String> names = new ArrayList<>();
+        for (String vary : headers.getAll(HttpHeaderNames.VARY)) {
+            for (String name : vary.split(",")) {
+                String trimmed = name.trim().toLowerCase();
+                if (!trimmed.isEmpty() && !names.contains(trimmed)) {
+                    names.add(trimmed);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * If-None-Match 按弱比较
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private final class Store implements ResponseRecorder.Target {
+        private final String primaryKey;
+        private final HttpHeaders requestHeaders;
+        private int maxAge;
+
+        Store(String primaryKey, HttpHeaders requestHeaders) {
+            this.primaryKey = primaryKey;
+            this.requestHeaders = requestHeaders;
+        }
+
+        @Override
+        public int maxSize() {
+            return maxEntrySize;
+        }
+
+        @Override
+        public boolean start(ContainerResponse response) {
+            maxAge = maxAge(response);
+            return maxAge > 0;
+        }
+
+        @Override
+        public void recorded(HttpResponseStatus status, HttpHeaders headers, ByteBuf body) {
+            store(primaryKey, requestHeaders, headers, body, maxAge);
+        }
+
+        @Override
+        public void discarded() {
+        }
+    }
+
+    private static final class Entry {
+        final HttpHeaders headers;
+        final ByteBuf body;
+        final String etag;
+        final long storedAt;
+        final long maxAgeNanos;
+
+        Entry(HttpHeaders headers, ByteBuf body, String etag, long storedAt, long maxAgeNanos) {
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.maxAgeNanos = maxAgeNanos;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - storedAt >= maxAgeNanos;
+        }
+
+        /**
+         * @return 已经被淘汰时为 null
+         */
+        ByteBuf retainBody() {
+            try {
+                return body.retainedDuplicate();
+            } catch (IllegalReferenceCountException e) {
+                //刚被淘汰
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+
+/**
+ * 响应压缩：按请求的 Accept-Encoding 选择 gzip 或 deflate，只压缩可压缩的 media type 并且长度不小于 minResponseSize 的响应。
+ * 开启后带 Content-Encoding: gzip/deflate 的请求体在交给 Jersey 之前解压。
+ * <p>
+ * Deflater 在所有响应之间复用，池中最多保留 CPU 数 * 4 个，超出的用完即释放。SSE/NDJSON 流式响应不压缩。
+ * 同一个实例在所有请求之间共享。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class ResponseCompression {
+
+    private final int minResponseSize;
+    private final int level;
+    private final List<MediaType> mediaTypes = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Deflater> gzipDeflaters;
+    private final BlockingQueue<Deflater> zlibDeflaters;
+
+    /**
+     * 不小于 1KB 的响应按默认级别（6）压缩
+     */
+    public ResponseCompression() {
+        this(1024, 6);
+    }
+
+    /**
+     * @param minResponseSize 小于这个长度（字节）的响应不压缩
+     * @param level           压缩级别 1-9
+     */
+    public ResponseCompression(int minResponseSize, int level) {
+        Preconditions.checkArgument(minResponseSize >= 0, "minResponseSize must be >= 0");
+        Preconditions.checkArgument(level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION, "level must be in [1, 9]");
+        this.minResponseSize = minResponseSize;
+        this.level = level;
+        int pooled = Runtime.getRuntime().availableProcessors() * 4;
+        gzipDeflaters = new ArrayBlockingQueue<>(pooled);
+        zlibDeflaters = new ArrayBlockingQueue<>(pooled);
+        for (String mediaType : new String[]{"text/*", "application/json", "application/*+json",
+                "application/javascript", "application/xml", "application/*+xml"}) {
+            addMediaType(mediaType);
+        }
+    }
+
+    /**
+     * @param mediaType 可压缩的 media type，subtype 可以是 * 或者 *+json 这样的后缀
+     */
+    public ResponseCompression addMediaType(String mediaType) {
+        mediaTypes.add(MediaType.valueOf(mediaType));
+        return this;
+    }
+
+    public int getMinResponseSize() {
+        return minResponseSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return 客户端接受的编码，gzip 优先；不接受压缩时为 null
+     */
+    static ContentEncoding accepted(HttpHeaders requestHeaders) {
+        String acceptEncoding = requestHeaders.get(HttpHeaderNames.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            float q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            String name = params[0].trim();
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                gzip = Math.max(gzip, q);
+            } else if ("deflate".equalsIgnoreCase(name)) {
+                deflate = Math.max(deflate, q);
+            } else if ("*".equals(name)) {
+                any = Math.max(any, q);
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return ContentEncoding.GZIP;
+        }
+        return deflate > 0 ? ContentEncoding.DEFLATE : null;
+    }
+
+    /**
+     * 资源已经自己设置了 Content-Encoding 的响应不再压缩
+     */
+    boolean isCompressible(MultivaluedMap<String, Object> responseHeaders) {
+        if (responseHeaders.containsKey(HttpHeaderNames.CONTENT_ENCODING.toString())) {
+            return false;
+        }
+        Object contentType = responseHeaders.getFirst(HttpHeaderNames.CONTENT_TYPE.toString());
+        if (contentType == null) {
+            return false;
+        }
+        MediaType type = contentType instanceof MediaType ? (MediaType) contentType : MediaType.valueOf(contentType.toString());
+        for (MediaType compressible : mediaTypes) {
+            if (matches(compressible, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(MediaType compressible, MediaType type) {
+        if (!compressible.getType().equalsIgnoreCase(type.getType())) {
+            return false;
+        }
+        String subtype = compressible.getSubtype();
+        if (subtype.startsWith("*")) {
+            // * 或者 *+json
+            return type.getSubtype().toLowerCase().endsWith(subtype.substring(1).toLowerCase());
+        }
+        return subtype.equalsIgnoreCase(type.getSubtype());
+    }
+
+    ResponseEncoder newEncoder(ContentEncoding encoding, ByteBufAllocator alloc) {
+        return new ResponseEncoder(this, encoding, alloc);
+    }
+
+    Deflater acquire(ContentEncoding encoding) {
+        Deflater deflater = pool(encoding).poll();
+        return deflater != null ? deflater : new Deflater(level, encoding == ContentEncoding.GZIP);
+    }
+
+    void release(ContentEncoding encoding, Deflater deflater) {
+        deflater.reset();
+        if (!pool(encoding).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private BlockingQueue<Deflater> pool(ContentEncoding encoding) {
+        return encoding == ContentEncoding.GZIP ? gzipDeflaters : zlibDeflaters;
+    }
+
+    enum ContentEncoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        final String value;
+
+        ContentEncoding(String value) {
+            this.value = value;
+        }
+    }
+}
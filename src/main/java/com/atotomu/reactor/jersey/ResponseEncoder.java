@@ -0,0 +1,122 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 一个响应的压缩状态，按 chunk 压缩。gzip 由 raw deflate 加上头和 CRC32/长度的尾组成，deflate 是 zlib 格式。
+ * 只在写线程上使用，Deflater 在结束或者 {@link #close()} 时还回池中
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class ResponseEncoder {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int MIN_WRITABLE = 1024;
+
+    private final ResponseCompression compression;
+    private final ResponseCompression.ContentEncoding encoding;
+    private final ByteBufAllocator alloc;
+    private final CRC32 crc;
+    private Deflater deflater;
+    private boolean started;
+
+    ResponseEncoder(ResponseCompression compression, ResponseCompression.ContentEncoding encoding, ByteBufAllocator alloc) {
+        this.compression = compression;
+        this.encoding = encoding;
+        this.alloc = alloc;
+        this.crc = encoding == ResponseCompression.ContentEncoding.GZIP ? new CRC32() : null;
+        this.deflater = compression.acquire(encoding);
+    }
+
+    String contentEncoding() {
+        return encoding.value;
+    }
+
+    /**
+     * @param chunk 会被释放
+     * @return 压缩后的数据，deflater 还没有输出时为空
+     */
+    ByteBuf encode(ByteBuf chunk) {
+        return deflate(chunk, false);
+    }
+
+    /**
+     * 压缩最后一块数据并结束，之后 Deflater 已经还回池中
+     *
+     * @param chunk 会被释放
+     */
+    ByteBuf finish(ByteBuf chunk) {
+        return deflate(chunk, true);
+    }
+
+    /**
+     * 响应中断时调用，可以重复调用
+     */
+    void close() {
+        if (deflater != null) {
+            compression.release(encoding, deflater);
+            deflater = null;
+        }
+    }
+
+    private ByteBuf deflate(ByteBuf chunk, boolean last) {
+        int length = chunk.readableBytes();
+        ByteBuf out = alloc.heapBuffer((length >> 2) + 64);
+        try {
+            if (!started) {
+                started = true;
+                if (crc != null) {
+                    out.writeBytes(GZIP_HEADER);
+                }
+            }
+            if (length > 0) {
+                byte[] input;
+                int offset;
+                if (chunk.hasArray()) {
+                    input = chunk.array();
+                    offset = chunk.arrayOffset() + chunk.readerIndex();
+                } else {
+                    input = ByteBufUtil.getBytes(chunk);
+                    offset = 0;
+                }
+                if (crc != null) {
+                    crc.update(input, offset, length);
+                }
+                deflater.setInput(input, offset, length);
+                while (!deflater.needsInput()) {
+                    drain(out);
+                }
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(out);
+                }
+                if (crc != null) {
+                    out.writeIntLE((int) crc.getValue());
+                    out.writeIntLE((int) deflater.getBytesRead());
+                }
+                close();
+            }
+            return out;
+        } catch (RuntimeException e) {
+            out.release();
+            close();
+            throw e;
+        } finally {
+            chunk.release();
+        }
+    }
+
+    private void drain(ByteBuf out) {
+        out.ensureWritable(MIN_WRITABLE);
+        int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+        out.writerIndex(out.writerIndex() + written);
+    }
+}
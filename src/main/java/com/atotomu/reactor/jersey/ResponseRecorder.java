@@ -0,0 +1,147 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.spi.container.ContainerResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把一个响应实际发送的字节复制一份，交给 {@link ResponseCache}、{@link RequestCoalescer} 这样需要响应内容的 {@link Target}，
+ * 多个 target 共用一份副本。只在写线程上使用，超过所有 target 的 maxSize、响应中断或者取消时放弃
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class ResponseRecorder {
+
+    private final List<Target> targets = new ArrayList<>(2);
+    private final List<Target> started = new ArrayList<>(2);
+    private int maxSize;
+    private ByteBuf body;
+    private boolean discarded;
+
+    ResponseRecorder add(Target target) {
+        targets.add(target);
+        maxSize = Math.max(maxSize, target.maxSize());
+        return this;
+    }
+
+    /**
+     * 不需要这个响应的 target 立即收到 {@link Target#discarded()}
+     *
+     * @return 有 target 需要这个响应时返回 true，之后发送的数据需要 {@link #record(ByteBuf)}
+     */
+    boolean start(ContainerResponse response) {
+        for (Target target : targets) {
+            if (target.start(response)) {
+                started.add(target);
+            } else {
+                target.discarded();
+            }
+        }
+        if (started.isEmpty()) {
+            discarded = true;
+            return false;
+        }
+        return true;
+    }
+
+    void record(ByteBuf chunk) {
+        if (discarded || !chunk.isReadable()) {
+            return;
+        }
+        int length = chunk.readableBytes();
+        if (body == null) {
+            if (length > maxSize) {
+                discard();
+                return;
+            }
+            body = UnpooledByteBufAllocator.DEFAULT.directBuffer(length);
+        } else if (body.readableBytes() + length > maxSize) {
+            discard();
+            return;
+        }
+        body.writeBytes(chunk, chunk.readerIndex(), length);
+    }
+
+    /**
+     * @param status          发送时的状态
+     * @param responseHeaders 发送时的响应头，去掉了和连接、长度相关的头之后交给 target
+     */
+    void complete(HttpResponseStatus status, HttpHeaders responseHeaders) {
+        if (discarded) {
+            return;
+        }
+        discarded = true;
+        ByteBuf recorded = body == null ? UnpooledByteBufAllocator.DEFAULT.directBuffer(0) : body;
+        body = null;
+        if (recorded.capacity() > recorded.writerIndex()) {
+            recorded.capacity(recorded.writerIndex());
+        }
+        HttpHeaders headers = new DefaultHttpHeaders().add(responseHeaders);
+        headers.remove(HttpHeaderNames.CONTENT_LENGTH)
+                .remove(HttpHeaderNames.TRANSFER_ENCODING)
+                .remove(HttpHeaderNames.CONNECTION)
+                .remove(HttpHeaderNames.AGE);
+        try {
+            for (Target target : started) {
+                if (recorded.readableBytes() > target.maxSize()) {
+                    target.discarded();
+                } else {
+                    target.recorded(status, headers, recorded);
+                }
+            }
+        } finally {
+            recorded.release();
+        }
+    }
+
+    void discard() {
+        if (discarded) {
+            return;
+        }
+        discarded = true;
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+        for (Target target : started) {
+            target.discarded();
+        }
+    }
+
+    /**
+     * 需要响应内容的一方，所有方法都在写线程上调用
+     */
+    interface Target {
+
+        /**
+         * @return 超过这个大小的响应不记录
+         */
+        int maxSize();
+
+        /**
+         * 响应头写出时调用
+         *
+         * @return 需要这个响应时返回 true
+         */
+        boolean start(ContainerResponse response);
+
+        /**
+         * @param headers 不能修改，需要修改时复制一份
+         * @param body    只在调用期间有效，需要保留时 retain
+         */
+        void recorded(HttpResponseStatus status, HttpHeaders headers, ByteBuf body);
+
+        /**
+         * 响应没有被记录，每个 target 最多收到一次 recorded 或者 discarded
+         */
+        void discarded();
+    }
+}
@@ -0,0 +1,245 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.uri.UriTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时从扫描到的资源类中解析出所有资源方法的路径模板，记录是否标记了 {@link NonBlocking}、{@link CoalesceRequests}，
+ * 请求到来时只做模板匹配，不再反射查找注解。
+ * <p>
+ * 模板按开头的字面量路径段放进一棵前缀树，第一个带参数的段之后的部分用预编译的正则匹配：
+ * 一个请求只和路径前缀相同的模板做正则匹配，路由数量增加到几千个时查找开销基本不变。
+ * <p>
+ * 匹配是保守的：只有请求能匹配到的资源方法全部是 non-blocking 时才在 event loop 上执行，
+ * 子资源定位器（只有 {@link Path} 没有 HTTP 方法）无法静态判断，一律交给工作线程。合并请求同样要求全部匹配
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class RouteTable {
+    private static final Logger logger = LoggerFactory.getLogger(RouteTable.class);
+
+    private final Node root = new Node();
+    private final boolean empty;
+    private final boolean noneCoalesced;
+
+    RouteTable(List<Route> routes) {
+        boolean anyNonBlocking = false;
+        boolean anyCoalesced = false;
+        for (Route route : routes) {
+            add(route);
+            anyNonBlocking |= route.nonBlocking;
+            anyCoalesced |= route.coalesced;
+        }
+        this.empty = !anyNonBlocking;
+        this.noneCoalesced = !anyCoalesced;
+    }
+
+    static RouteTable scan(ResourceConfig config) {
+        List<Route> routes = new ArrayList<>();
+        for (Class<?> resource : config.getRootResourceClasses()) {
+            Path classPath = resource.getAnnotation(Path.class);
+            if (classPath == null) {
+                continue;
+            }
+            boolean classNonBlocking = resource.isAnnotationPresent(NonBlocking.class);
+            boolean classCoalesced = resource.isAnnotationPresent(CoalesceRequests.class);
+            for (Method method : resource.getMethods()) {
+                Path methodPath = method.getAnnotation(Path.class);
+                String httpMethod = httpMethod(method);
+                if (httpMethod == null && methodPath == null) {
+                    continue;
+                }
+                String template = methodPath == null ? classPath.value() : classPath.value() + "/" + methodPath.value();
+                boolean nonBlocking = httpMethod != null
+                        && (classNonBlocking || method.isAnnotationPresent(NonBlocking.class));
+                boolean coalesced = HttpMethod.GET.equals(httpMethod)
+                        && (classCoalesced || method.isAnnotationPresent(CoalesceRequests.class));
+                Route route = new Route(template, httpMethod, nonBlocking, coalesced);
+                routes.add(route);
+                if (nonBlocking) {
+                    logger.info("Non-blocking resource method {} {} -> {}", httpMethod, route.template, method);
+                }
+                if (coalesced) {
+                    logger.info("Coalesced resource method {} {} -> {}", httpMethod, route.template, method);
+                }
+            }
+        }
+        logger.info("Route table built with {} resource methods", routes.size());
+        return new RouteTable(routes);
+    }
+
+    /**
+     * 沿着模板开头的字面量路径段往下建节点，模板挂在第一个带参数的段所在的节点上，全是字面量的挂在最后一个节点上
+     */
+    private void add(Route route) {
+        String template = route.template.getTemplate();
+        Node node = root;
+        int start = 1;
+        while (start < template.length()) {
+            int end = template.indexOf('/', start);
+            if (end < 0) {
+                end = template.length();
+            }
+            String segment = template.substring(start, end);
+            if (segment.indexOf('{') >= 0) {
+                break;
+            }
+            node = node.literals.computeIfAbsent(segment, s -> new Node());
+            start = end + 1;
+        }
+        node.routes.add(route);
+    }
+
+    /**
+     * @param method HTTP 方法
+     * @param path   解码后的请求路径，不含查询参数
+     * @return true 可以直接在 event loop 上执行
+     */
+    boolean isNonBlocking(String method, String path) {
+        return !empty && matchesOnly(method, path, false);
+    }
+
+    /**
+     * @param path 解码后的请求路径，不含查询参数
+     * @return true 同时到达的相同 GET 请求可以合并
+     */
+    boolean isCoalesced(String path) {
+        return !noneCoalesced && matchesOnly(HttpMethod.GET, path, true);
+    }
+
+    /**
+     * 只有请求路径经过的节点上的模板可能匹配
+     *
+     * @return 能匹配到的资源方法不为空并且全部带有这个标记
+     */
+    private boolean matchesOnly(String method, String path, boolean coalesced) {
+        String normalized = normalize(path);
+        boolean matched = false;
+        Node node = root;
+        int start = 1;
+        while (node != null) {
+            for (Route route : node.routes) {
+                if (route.httpMethod != null && !route.httpMethod.equals(method)) {
+                    continue;
+                }
+                if (route.template.getPattern().match(normalized) != null) {
+                    if (!(coalesced ? route.coalesced : route.nonBlocking)) {
+                        return false;
+                    }
+                    matched = true;
+                }
+            }
+            if (start >= normalized.length()) {
+                break;
+            }
+            int end = normalized.indexOf('/', start);
+            if (end < 0) {
+                end = normalized.length();
+            }
+            node = node.literals.get(normalized.substring(start, end));
+            start = end + 1;
+        }
+        return matched;
+    }
+
+    /**
+     * @param method HTTP 方法
+     * @param path   解码后的请求路径，不含查询参数
+     * @return 能匹配到的第一个资源方法的路径模板，没有匹配时为 null
+     */
+    String template(String method, String path) {
+        String normalized = normalize(path);
+        Node node = root;
+        int start = 1;
+        while (node != null) {
+            for (Route route : node.routes) {
+                if ((route.httpMethod == null || route.httpMethod.equals(method))
+                        && route.template.getPattern().match(normalized) != null) {
+                    return route.template.getTemplate();
+                }
+            }
+            if (start >= normalized.length()) {
+                break;
+            }
+            int end = normalized.indexOf('/', start);
+            if (end < 0) {
+                end = normalized.length();
+            }
+            node = node.literals.get(normalized.substring(start, end));
+            start = end + 1;
+        }
+        return null;
+    }
+
+    static String httpMethod(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 统一成以 / 开头、没有重复和结尾 / 的形式
+     */
+    static String normalize(String path) {
+        StringBuilder sb = new StringBuilder(path.length() + 1);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && (sb.length() == 0 || sb.charAt(sb.length() - 1) == '/')) {
+                continue;
+            }
+            if (sb.length() == 0) {
+                sb.append('/');
+            }
+            sb.append(c);
+        }
+        if (sb.length() == 0) {
+            return "/";
+        }
+        if (sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 前缀树的节点，只在构造时修改
+     */
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final List<Route> routes = new ArrayList<>();
+    }
+
+    static final class Route {
+        final UriTemplate template;
+        final String httpMethod;
+        final boolean nonBlocking;
+        final boolean coalesced;
+
+        /**
+         * @param template   资源类和资源方法上 {@link Path} 拼接成的路径模板
+         * @param httpMethod 子资源定位器为 null
+         */
+        Route(String template, String httpMethod, boolean nonBlocking, boolean coalesced) {
+            this.template = new UriTemplate(normalize(template));
+            this.httpMethod = httpMethod;
+            this.nonBlocking = nonBlocking;
+            this.coalesced = coalesced;
+        }
+    }
+}
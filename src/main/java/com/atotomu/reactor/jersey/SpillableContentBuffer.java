@@ -0,0 +1,169 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聚合模式下的请求体缓冲：单请求未超过阈值且全局预算充足时拷贝到一块池化的堆内存里，
+ * 否则转存到 memory-mapped 临时文件，读取时返回映射区域组成的 ByteBuf，对调用方透明。
+ * <p>
+ * write/complete 在 event loop 上调用，release 可能在工作线程上调用，锁只在关闭时才会有竞争。
+ * 锁里有文件 IO，用 ReentrantLock 而不是 synchronized，虚拟线程上调用时不会钉住 carrier 线程。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+final class SpillableContentBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(SpillableContentBuffer.class);
+
+    /**
+     * 临时文件每次映射的区域大小
+     */
+    static final int SPILL_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final ByteBufAllocator allocator;
+    private final ContentBufferLimits limits;
+    private final ReentrantLock lock = new ReentrantLock();
+    private ByteBuf memory;
+    private long reserved;
+    private FileChannel spillChannel;
+    private List<MappedByteBuffer> regions;
+    private MappedByteBuffer region;
+    private long size;
+    private boolean released;
+
+    SpillableContentBuffer(ByteBufAllocator allocator, ContentBufferLimits limits) {
+        this.allocator = allocator;
+        this.limits = limits;
+    }
+
+    void write(ByteBuf chunk) throws IOException {
+        lock.lock();
+        try {
+            if (released) {
+                return;
+            }
+            int length = chunk.readableBytes();
+            if (spillChannel == null) {
+                if (size + length <= limits.getInMemoryThreshold() && limits.reserve(length)) {
+                    if (memory == null) {
+                        //堆内存，JSON 解析时可以直接读底层数组
+                        memory = allocator.heapBuffer(length);
+                    }
+                    reserved += length;
+                    memory.writeBytes(chunk);
+                    size += length;
+                    return;
+                }
+                spill();
+            }
+            writeToRegions(chunk);
+            size += length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 完整的请求体，所有权交给调用方，映射区域要等 {@link #release()} 之后才解除
+     */
+    ByteBuf complete() throws IOException {
+        lock.lock();
+        try {
+            if (released) {
+                return Unpooled.EMPTY_BUFFER;
+            }
+            if (spillChannel == null) {
+                ByteBuf content = memory == null ? Unpooled.EMPTY_BUFFER : memory;
+                memory = null;
+                return content;
+            }
+            //DELETE_ON_CLOSE：关闭 channel 即删除文件，已经映射的区域仍然有效
+            spillChannel.close();
+            ByteBuffer[] buffers = new ByteBuffer[regions.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                ByteBuffer buffer = regions.get(i).duplicate();
+                buffer.flip();
+                buffers[i] = buffer;
+            }
+            return Unpooled.wrappedBuffer(buffers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (memory != null) {
+                memory.release();
+                memory = null;
+            }
+            limits.release(reserved);
+            reserved = 0;
+            if (spillChannel != null) {
+                try {
+                    spillChannel.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close spill file.", e);
+                }
+                for (MappedByteBuffer mapped : regions) {
+                    PlatformDependent.freeDirectBuffer(mapped);
+                }
+                regions.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void spill() throws IOException {
+        Path file = Files.createTempFile(limits.getSpillDirectory(), "request-body-", ".tmp");
+        spillChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        regions = new ArrayList<>();
+        limits.spilled();
+        logger.debug("Request body exceeds in-memory limit, spill to {}", file);
+        if (memory != null) {
+            writeToRegions(memory);
+            memory.release();
+            memory = null;
+            limits.release(reserved);
+            reserved = 0;
+        }
+    }
+
+    private void writeToRegions(ByteBuf chunk) throws IOException {
+        while (chunk.isReadable()) {
+            if (region == null || !region.hasRemaining()) {
+                long position = (long) regions.size() * SPILL_REGION_SIZE;
+                region = spillChannel.map(FileChannel.MapMode.READ_WRITE, position, SPILL_REGION_SIZE);
+                regions.add(region);
+            }
+            int length = Math.min(region.remaining(), chunk.readableBytes());
+            ByteBuffer target = region.duplicate();
+            target.limit(target.position() + length);
+            chunk.readBytes(target);
+            region.position(region.position() + length);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.atotomu.reactor.jersey;
+
+import javax.ws.rs.core.MediaType;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式响应的格式：资源方法返回 Flux 并且 @Produces 其中一种类型时，每个元素单独序列化成 JSON 后立即发送
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+enum StreamFormat {
+    /**
+     * Server-Sent Events，每个元素一个 data 事件
+     */
+    SERVER_SENT_EVENTS(new MediaType("text", "event-stream"), "data: ", "\n\n"),
+    /**
+     * 每行一个 JSON
+     */
+    NDJSON(new MediaType("application", "x-ndjson"), "", "\n");
+
+    final MediaType mediaType;
+    final byte[] prefix;
+    final byte[] suffix;
+
+    StreamFormat(MediaType mediaType, String prefix, String suffix) {
+        this.mediaType = mediaType;
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return contentType 对应的流式格式，不是流式类型时返回 null
+     */
+    static StreamFormat of(Object contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        MediaType mediaType = contentType instanceof MediaType
+                ? (MediaType) contentType : MediaType.valueOf(contentType.toString());
+        for (StreamFormat format : values()) {
+            if (format.mediaType.isCompatible(mediaType) && !mediaType.isWildcardType() && !mediaType.isWildcardSubtype()) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
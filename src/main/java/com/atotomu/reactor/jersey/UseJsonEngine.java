@@ -0,0 +1,21 @@
+package com.atotomu.reactor.jersey;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 资源方法的返回值或者请求体参数使用指定的 {@link JsonEngine}，而不是全局默认的实现。
+ * 优先使用 Builder 中注册的同类型实例，没有注册时用无参构造函数创建一个。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.PARAMETER})
+public @interface UseJsonEngine {
+    Class<? extends JsonEngine> value();
+}
@@ -0,0 +1,324 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.PoolResources;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热，在 {@link JerseyBasedHandler.Builder#build()} 返回之前完成：
+ * <ol>
+ * <li>遍历扫描到的资源方法，为 JSON 的请求体参数和返回值预先构造 Jackson 的 reader/writer 和（反）序列化器；</li>
+ * <li>可选地在本地临时端口上启动一个服务，通过真实的 apply 路径按轮重放配置的请求，
+ * 直到一轮的耗时和上一轮相差不超过 10%（或者达到最大轮数），让桥接和 Jersey 分发代码完成 JIT。</li>
+ * </ol>
+ * 预热在 handler 构造完成之后进行，重放的请求不经过响应缓存和请求合并，也不计入指标和 ByteBuf 跟踪。
+ * 预热请求失败只记录日志，不影响启动。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class Warmup {
+    private static final Logger logger = LoggerFactory.getLogger(Warmup.class);
+
+    private static final double STEADY_TOLERANCE = 0.1;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final List<WarmupRequest> requests = new ArrayList<>();
+    private final int minRounds;
+    private final int maxRounds;
+
+    /**
+     * 重放请求时至少 5 轮、最多 200 轮，没有添加请求时只预先构造序列化器
+     */
+    public Warmup() {
+        this(5, 200);
+    }
+
+    /**
+     * @param minRounds 至少重放的轮数
+     * @param maxRounds 最多重放的轮数，没有达到稳定也结束
+     */
+    public Warmup(int minRounds, int maxRounds) {
+        Preconditions.checkArgument(minRounds > 0, "minRounds must be > 0");
+        Preconditions.checkArgument(maxRounds >= minRounds, "maxRounds must be >= minRounds");
+        this.minRounds = minRounds;
+        this.maxRounds = maxRounds;
+    }
+
+    public Warmup addRequest(String method, String uri) {
+        return addRequest(method, uri, null, null);
+    }
+
+    /**
+     * @param method      HTTP 方法
+     * @param uri         以 / 开头的路径和查询参数
+     * @param contentType 请求体类型，没有请求体时为 null
+     * @param body        请求体，没有时为 null
+     */
+    public Warmup addRequest(String method, String uri, String contentType, String body) {
+        Preconditions.checkArgument(uri.startsWith("/"), "uri must start with /");
+        requests.add(new WarmupRequest(HttpMethod.valueOf(method), uri, contentType,
+                body == null ? null : body.getBytes(StandardCharsets.UTF_8)));
+        return this;
+    }
+
+    void run(JerseyBasedHandler handler, ResourceConfig config, MessageBodyWorkers workers) {
+        long start = System.nanoTime();
+        int prepared = prepareBindings(config, workers);
+        logger.info("Warm-up prepared {} JSON bindings in {} ms", prepared,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (!requests.isEmpty()) {
+            replay(handler);
+        }
+    }
+
+    private int prepareBindings(ResourceConfig config, MessageBodyWorkers workers) {
+        int prepared = 0;
+        for (Class<?> resource : config.getRootResourceClasses()) {
+            for (Method method : resource.getMethods()) {
+                if (RouteTable.httpMethod(method) == null) {
+                    continue;
+                }
+                try {
+                    prepared += prepareWriter(workers, method, produces(method));
+                    prepared += prepareReader(workers, method, consumes(method));
+                } catch (Exception e) {
+                    logger.warn("Warm-up failed to prepare JSON bindings for " + method, e);
+                }
+            }
+        }
+        return prepared;
+    }
+
+    private static int prepareWriter(MessageBodyWorkers workers, Method method, List<MediaType> mediaTypes) throws Exception {
+        Type type = entityType(method.getGenericReturnType());
+        Class<?> rawType = rawType(type);
+        if (rawType == void.class || rawType == Void.class || Response.class.isAssignableFrom(rawType)) {
+            return 0;
+        }
+        Annotation[] annotations = method.getAnnotations();
+        for (MediaType mediaType : mediaTypes) {
+            JacksonProvider provider = jacksonProvider(
+                    workers.getMessageBodyWriter(rawType, type, annotations, mediaType), annotations);
+            if (provider != null) {
+                provider.prepareWriter(rawType, type, annotations, mediaType);
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int prepareReader(MessageBodyWorkers workers, Method method, List<MediaType> mediaTypes) {
+        Type[] types = method.getGenericParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < types.length; i++) {
+            if (!isEntityParameter(annotations[i])) {
+                continue;
+            }
+            Class<?> rawType = rawType(types[i]);
+            for (MediaType mediaType : mediaTypes) {
+                JacksonProvider provider = jacksonProvider(
+                        workers.getMessageBodyReader(rawType, types[i], annotations[i], mediaType), annotations[i]);
+                if (provider != null) {
+                    provider.prepareReader(rawType, types[i], mediaType);
+                    return 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 选中的是 {@link JsonProvider} 时取实际使用的 Jackson 实现，其他 JSON 实现不需要预先构造
+     */
+    private static JacksonProvider jacksonProvider(Object provider, Annotation[] annotations) {
+        if (provider instanceof JacksonProvider) {
+            return (JacksonProvider) provider;
+        }
+        if (provider instanceof JsonProvider) {
+            return ((JsonProvider) provider).jacksonProvider(annotations);
+        }
+        return null;
+    }
+
+    /**
+     * 通过真实的 apply 路径重放请求，每轮按顺序发送全部请求
+     */
+    private void replay(JerseyBasedHandler handler) {
+        NettyContext server = HttpServer.create(o -> o.host("127.0.0.1").port(0)).newHandler(handler).block();
+        PoolResources pool = PoolResources.fixed("jersey-warmup", 1);
+        try {
+            HttpClient client = HttpClient.create(o -> o.host("127.0.0.1").port(server.address().getPort()).poolResources(pool));
+            long start = System.nanoTime();
+            long first = 0;
+            long previous = 0;
+            long last = 0;
+            int rounds = 0;
+            int failures = 0;
+            boolean steady = false;
+            while (!steady && rounds < maxRounds) {
+                long roundStart = System.nanoTime();
+                for (WarmupRequest request : requests) {
+                    //失败的请求只在第一轮记录日志
+                    if (!send(client, request, rounds == 0)) {
+                        failures++;
+                    }
+                }
+                last = System.nanoTime() - roundStart;
+                rounds++;
+                if (rounds == 1) {
+                    first = last;
+                }
+                steady = rounds >= minRounds && Math.abs(last - previous) <= previous * STEADY_TOLERANCE;
+                previous = last;
+            }
+            logger.info("Warm-up {} in {} ms after {} rounds of {} requests ({} failed): "
+                            + "{} us per request in the first round, {} us in the last",
+                    steady ? "reached steady state" : "stopped before reaching steady state",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), rounds, requests.size(), failures,
+                    TimeUnit.NANOSECONDS.toMicros(first / requests.size()),
+                    TimeUnit.NANOSECONDS.toMicros(last / requests.size()));
+        } finally {
+            pool.dispose();
+            server.dispose();
+        }
+    }
+
+    private static boolean send(HttpClient client, WarmupRequest request, boolean logFailure) {
+        try {
+            Integer status = client.request(request.method, request.uri, out -> {
+                out.failOnClientError(false).failOnServerError(false);
+                if (request.body == null) {
+                    return out.send();
+                }
+                out.header(HttpHeaderNames.CONTENT_TYPE, request.contentType)
+                        .header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(request.body.length));
+                return out.sendByteArray(Mono.just(request.body)).then();
+            }).flatMap(response -> response.receive().then(Mono.just(response.status().code())))
+                    .block(REQUEST_TIMEOUT);
+            if (status == null || status >= 400) {
+                if (logFailure) {
+                    logger.warn("Warm-up request {} {} returned {}", request.method, request.uri, status);
+                }
+                return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            if (logFailure) {
+                logger.warn("Warm-up request " + request.method + " " + request.uri + " failed", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 异步返回值按 {@link AsyncResponseFilter} 写出时的实体类型处理
+     */
+    private static Type entityType(Type returnType) {
+        Class<?> rawType = rawType(returnType);
+        if (Mono.class.isAssignableFrom(rawType) || CompletionStage.class.isAssignableFrom(rawType)) {
+            return AsyncResponseFilter.elementType(returnType);
+        }
+        if (Publisher.class.isAssignableFrom(rawType)) {
+            return new AsyncResponseFilter.ListType(AsyncResponseFilter.elementType(returnType));
+        }
+        return returnType;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return rawType(((ParameterizedType) type).getRawType());
+        }
+        return Object.class;
+    }
+
+    /**
+     * 没有任何 JAX-RS 参数注解或 {@link Context} 的参数就是请求体
+     */
+    private static boolean isEntityParameter(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation.annotationType().getName().startsWith("javax.ws.rs.")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<MediaType> produces(Method method) {
+        Produces produces = method.getAnnotation(Produces.class);
+        if (produces == null) {
+            produces = method.getDeclaringClass().getAnnotation(Produces.class);
+        }
+        return mediaTypes(produces == null ? null : produces.value());
+    }
+
+    private static List<MediaType> consumes(Method method) {
+        Consumes consumes = method.getAnnotation(Consumes.class);
+        if (consumes == null) {
+            consumes = method.getDeclaringClass().getAnnotation(Consumes.class);
+        }
+        return mediaTypes(consumes == null ? null : consumes.value());
+    }
+
+    /**
+     * 没有声明或者是通配类型时按 application/json 处理
+     */
+    private static List<MediaType> mediaTypes(String[] values) {
+        List<MediaType> mediaTypes = new ArrayList<>();
+        if (values == null) {
+            mediaTypes.add(MediaType.APPLICATION_JSON_TYPE);
+            return mediaTypes;
+        }
+        for (String value : values) {
+            for (String single : value.split(",")) {
+                MediaType mediaType = MediaType.valueOf(single.trim());
+                mediaTypes.add(mediaType.isWildcardType() || mediaType.isWildcardSubtype()
+                        ? MediaType.APPLICATION_JSON_TYPE : mediaType);
+            }
+        }
+        return mediaTypes;
+    }
+
+    private static final class WarmupRequest {
+        final HttpMethod method;
+        final String uri;
+        final String contentType;
+        final byte[] body;
+
+        WarmupRequest(HttpMethod method, String uri, String contentType, byte[] body) {
+            this.method = method;
+            this.uri = uri;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.atotomu.reactor.jersey;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界的请求处理线程池：线程数和排队数都有上限，排队超过 maxQueueWait 的请求不再处理，
+ * 两种情况都直接返回 503 并带上 Retry-After，流量突增时快速拒绝而不是无限创建线程。
+ *
+ * @author wangtong
+ * @since 1.0
+ */
+public class WorkerPool {
+
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final long maxQueueWaitNanos;
+    private final int retryAfterSeconds;
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final AtomicLong maxObservedQueueWaitNanos = new AtomicLong();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    public WorkerPool(int threads, int queueCapacity, long maxQueueWait, TimeUnit unit) {
+        this(threads, queueCapacity, maxQueueWait, unit, 1);
+    }
+
+    /**
+     * @param threads           工作线程数
+     * @param queueCapacity     排队上限，队列满时立即拒绝
+     * @param maxQueueWait      最长排队时间，超过后拒绝
+     * @param unit              maxQueueWait 的单位
+     * @param retryAfterSeconds 503 响应的 Retry-After（秒）
+     */
+    public WorkerPool(int threads, int queueCapacity, long maxQueueWait, TimeUnit unit, int retryAfterSeconds) {
+        Preconditions.checkArgument(threads > 0, "threads must be > 0");
+        Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be > 0");
+        Preconditions.checkArgument(maxQueueWait > 0, "maxQueueWait must be > 0");
+        Preconditions.checkArgument(retryAfterSeconds >= 0, "retryAfterSeconds must be >= 0");
+        this.maxQueueWaitNanos = unit.toNanos(maxQueueWait);
+        this.retryAfterSeconds = retryAfterSeconds;
+        //队列满或已经停止时计数后抛出 RequestRejectedException，由 handler 返回 503
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("jersey-worker-%d").setDaemon(true).build(),
+                (task, pool) -> {
+                    rejectedRequests.increment();
+                    throw new RequestRejectedException(pool.isShutdown() ? "Worker pool is shut down" : "Worker queue is full");
+                });
+        this.scheduler = Schedulers.fromExecutorService(executor);
+    }
+
+    Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 工作线程开始处理时调用，记录排队时间
+     *
+     * @param enqueuedNanos 提交时的 {@link System#nanoTime()}
+     * @return false 排队超时，请求应当被拒绝
+     */
+    boolean admit(long enqueuedNanos) {
+        long waited = System.nanoTime() - enqueuedNanos;
+        queueWaitNanos.add(waited);
+        dequeued.increment();
+        maxObservedQueueWaitNanos.accumulateAndGet(waited, Math::max);
+        if (waited > maxQueueWaitNanos) {
+            rejectedRequests.increment();
+            return false;
+        }
+        return true;
+    }
+
+    void dispose() {
+        scheduler.dispose();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * @return 当前排队的请求数
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return 正在处理请求的线程数
+     */
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return 队列满或排队超时被拒绝的请求总数
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * @return 平均排队时间
+     */
+    public long getAverageQueueWait(TimeUnit unit) {
+        long count = dequeued.sum();
+        return count == 0 ? 0 : unit.convert(queueWaitNanos.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 观察到的最长排队时间
+     */
+    public long getMaxQueueWait(TimeUnit unit) {
+        return unit.convert(maxObservedQueueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
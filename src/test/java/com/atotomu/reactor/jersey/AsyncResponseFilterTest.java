@@ -0,0 +1,197 @@
+package com.atotomu.reactor.jersey;
+
+import com.atotomu.reactor.jersey.router.ServiceAsync;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class AsyncResponseFilterTest {
+
+    private static JerseyBasedHandler handler;
+    private static NettyContext server;
+
+    @BeforeClass
+    public static void start() {
+        handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .addValueProvider(JacksonProvider.class)
+                .withResponseChunkSize(8 * 1024)
+                .build();
+        server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+    }
+
+    @AfterClass
+    public static void stop() throws Exception {
+        server.dispose();
+        handler.close();
+    }
+
+    @Test
+    public void test_mono_and_completion_stage_are_written_when_completed() throws Exception {
+        try (Socket socket = connect()) {
+            Response mono = exchange(socket, "GET /async/mono/7");
+            assertThat(mono.status).isEqualTo(200);
+            assertThat(mono.headers.get("content-type")).startsWith("application/json");
+            assertThat(mono.text()).contains("\"id\":7", "\"first_name\":\"first-7\"");
+
+            Response future = exchange(socket, "GET /async/future/8");
+            assertThat(future.status).isEqualTo(200);
+            assertThat(future.text()).contains("\"id\":8");
+
+            Response empty = exchange(socket, "GET /async/empty");
+            assertThat(empty.status).isEqualTo(204);
+            assertThat(empty.body).isEmpty();
+        }
+    }
+
+    @Test
+    public void test_flux_is_written_as_json_array() throws Exception {
+        try (Socket socket = connect()) {
+            Response flux = exchange(socket, "GET /async/flux/3");
+            assertThat(flux.status).isEqualTo(200);
+            assertThat(flux.text()).startsWith("[").endsWith("]").contains("\"id\":1", "\"id\":2", "\"id\":3");
+        }
+    }
+
+    @Test
+    public void test_flux_is_streamed_as_server_sent_events() throws Exception {
+        try (Socket socket = connect()) {
+            Response sse = exchange(socket, "GET /async/sse/3");
+            assertThat(sse.status).isEqualTo(200);
+            assertThat(sse.headers.get("content-type")).startsWith("text/event-stream");
+            assertThat(sse.headers).containsEntry("cache-control", "no-cache");
+            String[] events = sse.text().split("\n\n");
+            assertThat(events).hasSize(3);
+            for (int i = 0; i < events.length; i++) {
+                assertThat(events[i]).startsWith("data: {").contains("\"id\":" + (i + 1)).doesNotContain("\n");
+            }
+        }
+    }
+
+    @Test
+    public void test_flux_is_streamed_as_ndjson() throws Exception {
+        try (Socket socket = connect()) {
+            Response ndjson = exchange(socket, "GET /async/ndjson/3");
+            assertThat(ndjson.status).isEqualTo(200);
+            assertThat(ndjson.headers.get("content-type")).startsWith("application/x-ndjson");
+            assertThat(ndjson.text()).endsWith("\n");
+            String[] lines = ndjson.text().split("\n");
+            assertThat(lines).hasSize(3);
+            for (int i = 0; i < lines.length; i++) {
+                assertThat(lines[i]).startsWith("{").endsWith("}").contains("\"id\":" + (i + 1));
+            }
+        }
+    }
+
+    @Test
+    public void test_result_completed_on_another_event_loop_does_not_block_it() throws Exception {
+        int size = 32 * 1024 * 1024;
+        try (Socket socket = connect()) {
+            //客户端不读，响应写到一半就没有需求了
+            send(socket, "GET /async/bytes/" + size);
+            Thread.sleep(500);
+            ServiceAsync.EVENT_LOOP.submit(() -> null).get(2, TimeUnit.SECONDS);
+
+            Response response = read(socket, false);
+            assertThat(response.status).isEqualTo(200);
+            assertThat(response.body).hasSize(size);
+        }
+    }
+
+    private static Socket connect() throws IOException {
+        Socket socket = new Socket(server.address().getAddress(), server.address().getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String requestLine) throws IOException {
+        socket.getOutputStream().write((requestLine + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 发送一个没有请求体的请求，按 Content-Length 或者 chunked 读完响应，连接保持打开
+     */
+    private static Response exchange(Socket socket, String requestLine) throws IOException {
+        send(socket, requestLine);
+        return read(socket, requestLine.startsWith("HEAD"));
+    }
+
+    private static Response read(Socket socket, boolean head) throws IOException {
+        InputStream in = socket.getInputStream();
+        Response response = new Response();
+        response.status = Integer.parseInt(readLine(in).split(" ")[1]);
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (head || response.status == 204) {
+            response.body = body.toByteArray();
+            return response;
+        }
+        if ("chunked".equals(response.headers.get("transfer-encoding"))) {
+            for (int size = Integer.parseInt(readLine(in), 16); size > 0; size = Integer.parseInt(readLine(in), 16)) {
+                read(in, body, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else {
+            read(in, body, Integer.parseInt(response.headers.get("content-length")));
+        }
+        response.body = body.toByteArray();
+        return response;
+    }
+
+    private static void read(InputStream in, ByteArrayOutputStream body, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int read = 0;
+        while (read < size) {
+            int n = in.read(buffer, read, size - read);
+            if (n < 0) {
+                throw new IOException("Connection closed after " + read + " of " + size + " bytes");
+            }
+            read += n;
+        }
+        body.write(buffer);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static final class Response {
+        int status;
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        byte[] body;
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.atotomu.reactor.jersey;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Metered;
+import com.codahale.metrics.annotation.Timed;
+import com.codahale.metrics.graphite.GraphiteReporter;
+import com.sun.jersey.api.container.MappableContainerException;
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ResourceMethodDispatchProvider;
+import com.sun.jersey.spi.dispatch.RequestDispatcher;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class BridgeMetricsTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    @Test
+    public void test_resource_methods_are_timed() throws Exception {
+        RequestDispatcher plain = dispatcher("plain", (resource, context) -> {
+        });
+        RequestDispatcher annotated = dispatcher("annotated", (resource, context) -> {
+            throw new MappableContainerException(new IllegalStateException());
+        });
+
+        plain.dispatch(null, null);
+        plain.dispatch(null, null);
+        assertThatThrownBy(() -> annotated.dispatch(null, null)).isInstanceOf(MappableContainerException.class);
+
+        assertThat(registry.timer(MetricRegistry.name(Resource.class, "plain")).getCount()).isEqualTo(2);
+        assertThat(registry.timer(MetricRegistry.name(Resource.class, "timed")).getCount()).isEqualTo(1);
+        assertThat(registry.meter("annotated.calls").getCount()).isEqualTo(1);
+        assertThat(registry.meter(MetricRegistry.name(Resource.class, "annotated", "exceptions")).getCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void test_graphite_reporter_sends_plaintext() throws Exception {
+        registry.counter("requests").inc(3);
+        try (ServerSocket graphite = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            GraphiteReporter reporter = BridgeMetrics.graphiteReporter(registry,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), graphite.getLocalPort()), "bridge");
+            reporter.report();
+            reporter.stop();
+
+            graphite.setSoTimeout(5000);
+            List<String> lines = new ArrayList<>();
+            try (Socket socket = graphite.accept();
+                 BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lines.add(line);
+                }
+            }
+            assertThat(lines).hasSize(1);
+            assertThat(lines.get(0)).startsWith("bridge.requests.count 3 ");
+        }
+    }
+
+    private RequestDispatcher dispatcher(String methodName, RequestDispatcher target) throws Exception {
+        Method method = Resource.class.getMethod(methodName);
+        AbstractResourceMethod resourceMethod = new AbstractResourceMethod(new AbstractResource(Resource.class),
+                method, method.getReturnType(), method.getGenericReturnType(), "GET", method.getAnnotations());
+        ResourceMethodDispatchProvider provider = new MetricsDispatchAdapter(registry).adapt(m -> target);
+        return provider.create(resourceMethod);
+    }
+
+    public static class Resource {
+        public String plain() {
+            return "plain";
+        }
+
+        @Timed(name = "timed")
+        @Metered(name = "annotated.calls", absolute = true)
+        @ExceptionMetered(cause = IllegalStateException.class)
+        public String annotated() {
+            return "annotated";
+        }
+    }
+}
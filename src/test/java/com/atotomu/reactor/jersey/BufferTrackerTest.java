@@ -0,0 +1,205 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import reactor.core.publisher.Hooks;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class BufferTrackerTest {
+
+    private static final int ROUNDS = 40;
+    private static final int CLIENTS = 8;
+    private static final Pattern CONTENT_LENGTH = Pattern.compile("(?i)content-length: *([0-9]+)");
+
+    @Test
+    public void test_ledger_reports_unreleased_buffers_by_route() {
+        BufferTracker tracker = new BufferTracker();
+        BufferTracker.Ledger ledger = tracker.open("GET /a");
+        ByteBuf released = Unpooled.buffer(16);
+        ByteBuf leaked = Unpooled.buffer(16);
+        ledger.acquired(released);
+        ledger.acquired(leaked);
+        ledger.acquired(Unpooled.EMPTY_BUFFER);
+        ledger.released(released);
+        released.release();
+        assertThat(tracker.getOutstandingBuffers()).isEqualTo(1);
+        assertThat(tracker.getLeakedBuffers()).isZero();
+
+        ledger.close();
+        assertThat(tracker.getLeakedBuffersByRoute()).containsEntry("GET /a", 1);
+
+        leaked.release();
+        assertThat(tracker.getOutstandingBuffers()).isZero();
+        assertThat(tracker.getLeakedBuffers()).isZero();
+    }
+
+    @Test
+    public void test_aborted_streaming_requests_release_all_buffers() throws Exception {
+        stress(true);
+    }
+
+    @Test
+    public void test_aborted_aggregated_requests_release_all_buffers() throws Exception {
+        stress(false);
+    }
+
+    private void stress(boolean streamingRequest) throws Exception {
+        //被中断的请求不能有丢掉的错误或者工作线程上未捕获的异常。
+        //请求体已经读完之后连接被重置，reactor-netty 自己会把这个错误丢掉，不算在内
+        List<Throwable> dropped = new CopyOnWriteArrayList<>();
+        Hooks.onErrorDropped(e -> {
+            if (!droppedBy("reactor.ipc.netty.channel.FluxReceive")) {
+                dropped.add(e);
+            }
+        });
+        Thread.UncaughtExceptionHandler uncaughtHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> dropped.add(e));
+        BufferTracker tracker = new BufferTracker();
+        JerseyBasedHandler handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .withStreamingRequest(streamingRequest)
+                .withResponseChunkSize(8 * 1024)
+                .withBufferTracking(tracker)
+                .build();
+        NettyContext server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            InetSocketAddress address = server.address();
+            List<Future<?>> rounds = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                rounds.add(clients.submit(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        abortUpload(address);
+                        abortDownload(address);
+                        assertThat(exchange(address, "GET /bulk/fail HTTP/1.1\r\n\r\n", 0)).startsWith("HTTP/1.1");
+                        assertThat(exchange(address, "POST /bulk HTTP/1.1\r\nContent-Type: application/octet-stream\r\n"
+                                + "Content-Length: 100000\r\nConnection: close\r\n\r\n", 100000)).endsWith("100000");
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> round : rounds) {
+                round.get(60, TimeUnit.SECONDS);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (tracker.getOutstandingBuffers() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(tracker.getTrackedRequests()).isGreaterThan(CLIENTS * ROUNDS * 2);
+            assertThat(tracker.getOutstandingBuffers()).as(tracker.report()).isZero();
+            assertThat(dropped).isEmpty();
+        } finally {
+            clients.shutdownNow();
+            server.dispose();
+            handler.close();
+            Hooks.resetOnErrorDropped();
+            Thread.setDefaultUncaughtExceptionHandler(uncaughtHandler);
+        }
+    }
+
+    private static boolean droppedBy(String className) {
+        for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+            if (frame.getClassName().equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 只发送一部分请求体就断开
+     */
+    private static void abortUpload(InetSocketAddress address) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoLinger(true, 0);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /bulk HTTP/1.1\r\nContent-Type: application/octet-stream\r\n"
+                    + "Content-Length: 1048576\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[64 * 1024]);
+            out.flush();
+        }
+    }
+
+    /**
+     * 只读取一部分响应就断开
+     */
+    private static void abortDownload(InetSocketAddress address) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoLinger(true, 0);
+            socket.setSoTimeout(10000);
+            socket.getOutputStream().write("GET /bulk/4194304 HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read = 0;
+            while (read < buffer.length) {
+                int n = in.read(buffer, read, buffer.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        }
+    }
+
+    /**
+     * 发送请求，有 Content-Length 时读完响应体，否则读取到连接关闭
+     */
+    private static String exchange(InetSocketAddress address, String head, int bodyLength) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[bodyLength]);
+            out.flush();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            try {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    response.write(buffer, 0, n);
+                    if (complete(response.toString("ISO-8859-1"))) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                //the server resets the connection of an aborted response
+            }
+            return response.toString("ISO-8859-1");
+        }
+    }
+
+    private static boolean complete(String response) {
+        int headEnd = response.indexOf("\r\n\r\n");
+        if (headEnd < 0) {
+            return false;
+        }
+        Matcher matcher = CONTENT_LENGTH.matcher(response.substring(0, headEnd));
+        return matcher.find() && response.length() - headEnd - 4 >= Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,150 @@
+package com.atotomu.reactor.jersey;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class ChunkedResponseOutputStreamTest {
+
+    private static JerseyBasedHandler handler;
+    private static NettyContext server;
+
+    @BeforeClass
+    public static void start() {
+        handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .withResponseChunkSize(8 * 1024)
+                .build();
+        server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+    }
+
+    @AfterClass
+    public static void stop() throws Exception {
+        server.dispose();
+        handler.close();
+    }
+
+    @Test
+    public void test_single_chunk_response_has_content_length_and_keeps_alive() throws Exception {
+        try (Socket socket = connect()) {
+            //Jersey 知道长度的 byte[] 和不知道长度的 StreamingOutput，同一个连接上连续请求
+            Response known = exchange(socket, "GET /bulk/bytes/10");
+            assertThat(known.headers).containsEntry("content-length", "10").doesNotContainKey("connection");
+            assertThat(known.body).hasSize(10);
+
+            Response unknown = exchange(socket, "GET /bulk/10");
+            assertThat(unknown.headers).containsEntry("content-length", "10").doesNotContainKey("connection");
+            assertThat(unknown.body).hasSize(10);
+        }
+    }
+
+    @Test
+    public void test_multi_chunk_response_is_streamed() throws Exception {
+        try (Socket socket = connect()) {
+            Response known = exchange(socket, "GET /bulk/bytes/100000");
+            assertThat(known.headers).containsEntry("content-length", "100000").doesNotContainKey("transfer-encoding");
+            assertThat(known.body).hasSize(100000);
+
+            Response unknown = exchange(socket, "GET /bulk/100000");
+            assertThat(unknown.headers).containsEntry("transfer-encoding", "chunked").doesNotContainKey("content-length");
+            assertThat(unknown.body).hasSize(100000);
+        }
+    }
+
+    @Test
+    public void test_head_response_does_not_advertise_empty_body() throws Exception {
+        try (Socket socket = connect()) {
+            Response known = exchange(socket, "HEAD /bulk/bytes/10");
+            assertThat(known.status).isEqualTo(200);
+            assertThat(known.headers).containsEntry("content-length", "10");
+
+            Response unknown = exchange(socket, "HEAD /bulk/10");
+            assertThat(unknown.status).isEqualTo(200);
+            assertThat(unknown.headers).doesNotContainEntry("content-length", "0");
+        }
+    }
+
+    private static Socket connect() throws IOException {
+        Socket socket = new Socket(server.address().getAddress(), server.address().getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    /**
+     * 发送一个没有请求体的请求，按 Content-Length 或者 chunked 读完响应，连接保持打开
+     */
+    private static Response exchange(Socket socket, String requestLine) throws IOException {
+        socket.getOutputStream().write((requestLine + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        InputStream in = socket.getInputStream();
+        Response response = new Response();
+        response.status = Integer.parseInt(readLine(in).split(" ")[1]);
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (requestLine.startsWith("HEAD")) {
+            response.body = body.toByteArray();
+            return response;
+        }
+        if ("chunked".equals(response.headers.get("transfer-encoding"))) {
+            for (int size = Integer.parseInt(readLine(in), 16); size > 0; size = Integer.parseInt(readLine(in), 16)) {
+                read(in, body, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else {
+            read(in, body, Integer.parseInt(response.headers.get("content-length")));
+        }
+        response.body = body.toByteArray();
+        return response;
+    }
+
+    private static void read(InputStream in, ByteArrayOutputStream body, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int read = 0;
+        while (read < size) {
+            int n = in.read(buffer, read, size - read);
+            if (n < 0) {
+                throw new IOException("Connection closed after " + read + " of " + size + " bytes");
+            }
+            read += n;
+        }
+        body.write(buffer);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static final class Response {
+        int status;
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        byte[] body;
+    }
+}
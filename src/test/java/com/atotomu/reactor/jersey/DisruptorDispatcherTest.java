@@ -0,0 +1,77 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class DisruptorDispatcherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final DisruptorDispatcher dispatcher = new DisruptorDispatcher(4, 1);
+
+    @Test
+    public void test_dispose_drains_queued_requests() throws Exception {
+        dispatcher.start(this::process);
+        CompletableFuture<Void> running = dispatch();
+        CompletableFuture<Void> queued = dispatch();
+
+        CompletableFuture<Void> disposed = CompletableFuture.runAsync(dispatcher::dispose);
+        Thread.sleep(100);
+        assertThat(disposed).isNotDone();
+        release.countDown();
+        disposed.get(10, TimeUnit.SECONDS);
+
+        assertThat(running.get(10, TimeUnit.SECONDS)).isNull();
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isNull();
+        assertRejected(dispatch());
+        assertThat(dispatcher.getRejectedRequests()).isZero();
+    }
+
+    @Test
+    public void test_dispose_rejects_requests_left_after_timeout() throws Exception {
+        dispatcher.start(this::process);
+        CompletableFuture<Void> running = dispatch();
+        CompletableFuture<Void> queued = dispatch();
+
+        dispatcher.dispose(100, TimeUnit.MILLISECONDS);
+        assertRejected(queued);
+        assertThat(running).isNotDone();
+
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isNull();
+    }
+
+    private void process(ContainerRequest request, NettyResponseWriter writer, InputStream requestData, MonoSink<Void> sink,
+                         long enqueuedNanos) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.success();
+    }
+
+    private CompletableFuture<Void> dispatch() {
+        return Mono.<Void>create(sink -> dispatcher.dispatch(null, null, null, sink)).toFuture();
+    }
+
+    private static void assertRejected(CompletableFuture<Void> response) {
+        assertThatThrownBy(() -> response.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RequestRejectedException.class);
+    }
+}
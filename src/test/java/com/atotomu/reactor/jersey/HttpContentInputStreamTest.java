@@ -0,0 +1,162 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class HttpContentInputStreamTest {
+
+    @Test
+    public void test_streaming_read_releases_chunks() throws IOException {
+        List<ByteBuf> chunks = chunks(10);
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks));
+
+        assertThat(in.markSupported()).isFalse();
+        assertThat(readFully(in)).isEqualTo("chunk-0chunk-1chunk-2chunk-3chunk-4chunk-5chunk-6chunk-7chunk-8chunk-9");
+        in.close();
+
+        assertThat(chunks).allMatch(chunk -> chunk.refCnt() == 1);
+    }
+
+    @Test
+    public void test_streaming_demand_follows_consumption() throws IOException {
+        AtomicLong requested = new AtomicLong();
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT,
+                Flux.fromIterable(chunks(20)).doOnRequest(requested::addAndGet));
+
+        assertThat(requested.get()).isEqualTo(HttpContentInputStream.STREAMING_PREFETCH);
+        byte[] bytes = new byte["chunk-0".length()];
+        // 每从队列取走 STREAMING_REPLENISH 个 chunk 才批量补充需求
+        for (int i = 1; i < HttpContentInputStream.STREAMING_REPLENISH; i++) {
+            assertThat(in.read(bytes, 0, bytes.length)).isEqualTo(bytes.length);
+        }
+        assertThat(requested.get()).isEqualTo(HttpContentInputStream.STREAMING_PREFETCH);
+        assertThat(in.read()).isEqualTo('c');
+        assertThat(requested.get()).isEqualTo(HttpContentInputStream.STREAMING_PREFETCH + HttpContentInputStream.STREAMING_REPLENISH);
+        in.close();
+    }
+
+    @Test
+    public void test_close_releases_unread_chunks() throws IOException {
+        List<ByteBuf> chunks = chunks(3);
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks));
+        assertThat(in.read()).isEqualTo('c');
+        in.close();
+        in.close();
+
+        assertThat(chunks).allMatch(chunk -> chunk.refCnt() == 1);
+    }
+
+    @Test
+    public void test_cross_thread_handoff() throws IOException {
+        int count = 20000;
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT,
+                Flux.range(0, count)
+                        .map(i -> Unpooled.wrappedBuffer(new byte[]{i.byteValue()}))
+                        .subscribeOn(Schedulers.single()));
+
+        long read = 0;
+        while (in.read() != -1) {
+            read++;
+        }
+        in.close();
+
+        assertThat(read).isEqualTo(count);
+    }
+
+    @Test
+    public void test_buffered_spill_to_mapped_file() throws IOException {
+        Path dir = Files.createTempDirectory("spill");
+        ContentBufferLimits limits = new ContentBufferLimits(16, Long.MAX_VALUE, Integer.MAX_VALUE, dir);
+        List<ByteBuf> chunks = chunks(10);
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks), limits, false);
+
+        assertThat(readFully(in)).isEqualTo("chunk-0chunk-1chunk-2chunk-3chunk-4chunk-5chunk-6chunk-7chunk-8chunk-9");
+        assertThat(limits.getSpilledRequests()).isEqualTo(1);
+        assertThat(limits.getMemoryInUse()).isEqualTo(0);
+        in.close();
+
+        assertThat(dir.toFile().list()).isEmpty();
+        assertThat(chunks).allMatch(chunk -> chunk.refCnt() == 1);
+    }
+
+    @Test
+    public void test_buffered_in_memory_within_budget() throws IOException {
+        ContentBufferLimits limits = new ContentBufferLimits(1024, 1024, Integer.MAX_VALUE);
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks(3)), limits, false);
+
+        assertThat(in.markSupported()).isTrue();
+        in.mark(1);
+        assertThat(in.read()).isEqualTo('c');
+        in.reset();
+        assertThat(readFully(in)).isEqualTo("chunk-0chunk-1chunk-2");
+        assertThat(limits.getMemoryInUse()).isEqualTo(21);
+        assertThat(limits.getSpilledRequests()).isEqualTo(0);
+        in.close();
+
+        assertThat(limits.getMemoryInUse()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_buffered_spill_when_budget_exhausted() throws IOException {
+        ContentBufferLimits limits = new ContentBufferLimits(1024, 10, Integer.MAX_VALUE);
+        InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks(3)), limits, false);
+
+        assertThat(readFully(in)).isEqualTo("chunk-0chunk-1chunk-2");
+        assertThat(limits.getSpilledRequests()).isEqualTo(1);
+        in.close();
+    }
+
+    @Test
+    public void test_max_content_length() throws IOException {
+        ContentBufferLimits limits = new ContentBufferLimits(1024, 1024, 10);
+        for (boolean streaming : new boolean[]{true, false}) {
+            InputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, Flux.fromIterable(chunks(3)), limits, streaming);
+
+            assertThatThrownBy(() -> readFully(in))
+                    .isInstanceOf(WebApplicationException.class)
+                    .matches(e -> ((WebApplicationException) e).getResponse().getStatus() == 413);
+            in.close();
+        }
+        assertThat(limits.getMemoryInUse()).isEqualTo(0);
+    }
+
+    private static List<ByteBuf> chunks(int count) {
+        // 生产方持有一个引用（reactor-netty 在 onNext 之后释放），流只释放自己 retain 的那一个
+        return IntStream.range(0, count)
+                .mapToObj(i -> Unpooled.copiedBuffer("chunk-" + i, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.atotomu.reactor.jersey;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class JacksonProviderTest {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final JacksonProvider provider = new JacksonProvider();
+
+    @Test
+    public void test_selection_is_stable_across_calls() {
+        for (int i = 0; i < 2; i++) {
+            assertThat(provider.isWriteable(Map.class, Map.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isTrue();
+            assertThat(provider.isWriteable(Response.class, Response.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+            assertThat(provider.isReadable(InputStream.class, InputStream.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+            assertThat(provider.isReadable(Map.class, Map.class, NO_ANNOTATIONS, MediaType.TEXT_PLAIN_TYPE)).isFalse();
+        }
+    }
+
+    @Test
+    public void test_swapping_mapper_invalidates_cached_writers() throws Exception {
+        Map<String, Object> value = Collections.singletonMap("id", 1);
+        assertThat(write(value)).isEqualTo("{\"id\":1}");
+
+        ObjectMapper indenting = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        provider.mapper = indenting;
+        assertThat(write(value)).isEqualTo(indenting.writeValueAsString(value));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_aggregated_body_is_parsed_in_place() throws Exception {
+        byte[] json = "{\"id\":1,\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+        HttpContentInputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT,
+                Flux.just(Unpooled.wrappedBuffer(json, 0, 8), Unpooled.wrappedBuffer(json, 8, json.length - 8)),
+                ContentBufferLimits.UNLIMITED, false);
+
+        Object value = provider.readFrom((Class) Map.class, Map.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, in);
+
+        assertThat(value).isEqualTo(ImmutableMap.of("id", 1, "name", "a"));
+        assertThat(in.read()).isEqualTo(-1);
+        in.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_binary_formats_round_trip_with_view() throws Exception {
+        Annotation[] summary = JacksonProviderTest.class.getDeclaredMethod("summary").getAnnotations();
+        View value = new View();
+        for (JacksonProvider binary : new JacksonProvider[]{new JacksonSmileProvider(), new JacksonCborProvider()}) {
+            MediaType mediaType = binary instanceof JacksonSmileProvider
+                    ? JacksonSmileProvider.APPLICATION_SMILE_TYPE : JacksonCborProvider.APPLICATION_CBOR_TYPE;
+            assertThat(binary.isWriteable(View.class, View.class, summary, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+            assertThat(binary.isWriteable(View.class, View.class, summary, MediaType.WILDCARD_TYPE)).isFalse();
+            assertThat(binary.isWriteable(View.class, View.class, summary, mediaType)).isTrue();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            binary.writeTo(value, View.class, View.class, summary, mediaType, null, out);
+            Object read = binary.readFrom((Class) Map.class, Map.class, NO_ANNOTATIONS, mediaType, null,
+                    new ByteArrayInputStream(out.toByteArray()));
+
+            assertThat(read).isEqualTo(Collections.singletonMap("id", 1));
+        }
+        assertThat(provider.isWriteable(View.class, View.class, summary, JacksonSmileProvider.APPLICATION_SMILE_TYPE)).isFalse();
+    }
+
+    @JsonView(Summary.class)
+    private void summary() {
+    }
+
+    interface Summary {
+    }
+
+    interface Detail extends Summary {
+    }
+
+    static class View {
+        @JsonView(Summary.class)
+        public int id = 1;
+        @JsonView(Detail.class)
+        public String secret = "secret";
+    }
+
+    private String write(Object value) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(value, value.getClass(), value.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toString("UTF-8");
+    }
+}
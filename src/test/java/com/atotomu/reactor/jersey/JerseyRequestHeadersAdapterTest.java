@@ -0,0 +1,51 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class JerseyRequestHeadersAdapterTest {
+
+    private final HttpHeaders headers = new DefaultHttpHeaders()
+            .add("Accept", "application/json")
+            .add("Cookie", "a=1")
+            .add("X-Id", "7")
+            .add("cookie", "b=2");
+    private final JerseyRequestHeadersAdapter adapter = new JerseyRequestHeadersAdapter(headers);
+
+    @Test
+    public void test_lookup_by_name() {
+        assertThat(adapter.getFirst("accept")).isEqualTo("application/json");
+        assertThat(adapter.get("COOKIE")).containsExactly("a=1", "b=2");
+        assertThat(adapter.get("If-None-Match")).isNull();
+        assertThat(adapter.getFirst("If-None-Match")).isNull();
+        assertThat(adapter.getFirst("X-Id", "0")).isEqualTo("7");
+        assertThat(adapter.containsKey("x-id")).isTrue();
+        assertThat(adapter.containsValue("b=2")).isTrue();
+    }
+
+    @Test
+    public void test_views_group_values_by_name() {
+        assertThat(adapter.size()).isEqualTo(3);
+        assertThat(adapter.keySet()).containsExactly("Accept", "Cookie", "X-Id");
+        assertThat(adapter.entrySet()).extracting(Map.Entry::getValue)
+                .containsExactly(Arrays.asList("application/json"), Arrays.asList("a=1", "b=2"), Arrays.asList("7"));
+        assertThat(adapter.values()).hasSize(3);
+
+        headers.add("Host", "localhost");
+        List<String> host = adapter.get("host");
+        assertThat(host).containsExactly("localhost");
+        assertThat(adapter).contains(entry("Host", host));
+    }
+}
@@ -0,0 +1,52 @@
+package com.atotomu.reactor.jersey;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class JsonProviderTest {
+
+    private final JsonProvider provider = new JsonProvider(new JacksonJsonEngine(), Collections.emptyList());
+
+    @Test
+    public void test_use_json_engine_selects_engine() throws Exception {
+        Annotation[] fastjson = JsonProviderTest.class.getDeclaredMethod("fastjson").getAnnotations();
+
+        assertThat(provider.jacksonProvider(new Annotation[0])).isNotNull();
+        assertThat(provider.jacksonProvider(fastjson)).isNull();
+        assertThat(write(Collections.singletonMap("id", 1), fastjson)).isEqualTo("{\"id\":1}");
+    }
+
+    @Test
+    public void test_fastjson_rejects_class_values() throws Exception {
+        Annotation[] fastjson = JsonProviderTest.class.getDeclaredMethod("fastjson").getAnnotations();
+        byte[] json = "{\"@type\":\"java.lang.Class\",\"val\":\"java.lang.Runtime\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> provider.readFrom((Class) Map.class, Object.class, fastjson,
+                MediaType.APPLICATION_JSON_TYPE, null, new ByteArrayInputStream(json)))
+                .hasMessageContaining("java.lang.Class");
+    }
+
+    @UseJsonEngine(FastjsonEngine.class)
+    private void fastjson() {
+    }
+
+    private String write(Object value, Annotation[] annotations) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(value, value.getClass(), value.getClass(), annotations, MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,121 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.container.ContainerResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private HttpServerResponse response;
+
+    @Before
+    public void setUp() {
+        response = mock(HttpServerResponse.class, Answers.RETURNS_SELF);
+        when(response.then()).thenReturn(Mono.empty());
+        //EmbeddedChannel 的 event loop 总是当前线程
+        NettyContext context = mock(NettyContext.class);
+        when(context.channel()).thenReturn(new EmbeddedChannel());
+        when(response.context()).thenReturn(context);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_waiters_share_leader_response() {
+        RequestCoalescer.Flight flight = coalescer.lead("/a");
+        AtomicInteger fallbacks = new AtomicInteger();
+        Mono<Void> first = coalescer.join("/a", response, () -> Mono.fromRunnable(fallbacks::incrementAndGet));
+        Mono<Void> second = coalescer.join("/a", response, () -> Mono.fromRunnable(fallbacks::incrementAndGet));
+        first.subscribe();
+        second.subscribe();
+        verify(response, never()).send(any(Publisher.class));
+
+        ResponseRecorder recorder = new ResponseRecorder().add(flight);
+        assertThat(recorder.start(response(new OutBoundHeaders()))).isTrue();
+        ByteBuf chunk = Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8);
+        recorder.record(chunk);
+        chunk.release();
+        recorder.complete(HttpResponseStatus.OK, new DefaultHttpHeaders());
+
+        assertThat(sentBodies()).containsExactly("hello", "hello");
+        assertThat(fallbacks).hasValue(0);
+        assertThat(coalescer.getHits()).isEqualTo(2);
+        assertThat(coalescer.getMisses()).isEqualTo(1);
+        assertThat(coalescer.getInFlight()).isEqualTo(0);
+        assertThat(coalescer.join("/a", response, Mono::empty)).isNull();
+    }
+
+    @Test
+    public void test_lost_lead_race_is_not_a_miss() {
+        RequestCoalescer.Flight flight = coalescer.lead("/a");
+        assertThat(flight).isNotNull();
+        assertThat(coalescer.lead("/a")).isNull();
+        assertThat(coalescer.getMisses()).isEqualTo(1);
+        assertThat(coalescer.getHits()).isZero();
+        flight.abandon();
+    }
+
+    @Test
+    public void test_unshared_response_falls_back() {
+        RequestCoalescer.Flight flight = coalescer.lead("/a");
+        AtomicInteger fallbacks = new AtomicInteger();
+        coalescer.join("/a", response, () -> Mono.fromRunnable(fallbacks::incrementAndGet)).subscribe();
+
+        OutBoundHeaders headers = new OutBoundHeaders();
+        headers.putSingle("Set-Cookie", "session=1");
+        assertThat(new ResponseRecorder().add(flight).start(response(headers))).isFalse();
+        flight.abandon();
+
+        assertThat(fallbacks).hasValue(1);
+        assertThat(coalescer.getInFlight()).isEqualTo(0);
+    }
+
+    private static ContainerResponse response(OutBoundHeaders headers) {
+        ContainerResponse response = mock(ContainerResponse.class);
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHttpHeaders()).thenReturn(headers);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String[] sentBodies() {
+        ArgumentCaptor<Publisher> sent = ArgumentCaptor.forClass(Publisher.class);
+        verify(response, times(2)).send(sent.capture());
+        List<Publisher> bodies = sent.getAllValues();
+        String[] contents = new String[bodies.size()];
+        for (int i = 0; i < contents.length; i++) {
+            ByteBuf body = ((Mono<ByteBuf>) bodies.get(i)).block();
+            contents[i] = body.toString(StandardCharsets.UTF_8);
+            body.release();
+        }
+        return contents;
+    }
+}
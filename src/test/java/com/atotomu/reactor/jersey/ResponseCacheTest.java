@@ -0,0 +1,196 @@
+package com.atotomu.reactor.jersey;
+
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.container.ContainerResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.http.server.HttpServerRequest;
+import reactor.ipc.netty.http.server.HttpServerResponse;
+
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class ResponseCacheTest {
+
+    private ResponseCache cache;
+    private HttpServerResponse response;
+
+    @Before
+    public void setUp() {
+        cache = new ResponseCache(100, 50);
+        response = mock(HttpServerResponse.class, Answers.RETURNS_SELF);
+        when(response.responseHeaders()).thenReturn(new DefaultHttpHeaders());
+        when(response.send()).thenReturn(Mono.empty());
+        when(response.then()).thenReturn(Mono.empty());
+    }
+
+    @Test
+    public void test_cache_control_max_age() {
+        assertThat(ResponseCache.maxAge("max-age=60")).isEqualTo(60);
+        assertThat(ResponseCache.maxAge("public, max-age=60, s-maxage=10")).isEqualTo(10);
+        assertThat(ResponseCache.maxAge("max-age=60, private")).isEqualTo(0);
+        assertThat(ResponseCache.maxAge("no-store")).isEqualTo(0);
+        assertThat(ResponseCache.maxAge("no-cache, max-age=60")).isEqualTo(0);
+        assertThat(ResponseCache.maxAge("max-age=abc")).isEqualTo(0);
+        assertThat(ResponseCache.maxAge("public")).isEqualTo(0);
+    }
+
+    @Test
+    public void test_annotation_does_not_override_private_response() {
+        assertThat(ResponseCache.maxAge(response(null, cacheFor(30)))).isEqualTo(30);
+        assertThat(ResponseCache.maxAge(response("max-age=60", cacheFor(30)))).isEqualTo(30);
+        assertThat(ResponseCache.maxAge(response("private, max-age=60", cacheFor(30)))).isEqualTo(0);
+        assertThat(ResponseCache.maxAge(response("no-store", cacheFor(30)))).isEqualTo(0);
+        assertThat(ResponseCache.maxAge(response("max-age=60"))).isEqualTo(60);
+    }
+
+    @Test
+    public void test_hit_and_conditional_request() {
+        record(request("/a", null), "hello", new DefaultHttpHeaders());
+        assertThat(cache.serve(request("/b", null), response)).isNull();
+
+        assertThat(cache.serve(request("/a", null), response)).isNotNull();
+        assertThat(sentBody()).isEqualTo("hello");
+        ArgumentCaptor<HttpHeaders> headers = ArgumentCaptor.forClass(HttpHeaders.class);
+        verify(response).headers(headers.capture());
+        String etag = headers.getValue().get(HttpHeaderNames.ETAG);
+        assertThat(etag).startsWith("\"5-");
+
+        HttpServerRequest conditional = request("/a", null);
+        conditional.requestHeaders().set(HttpHeaderNames.IF_NONE_MATCH, "\"other\", W/" + etag);
+        assertThat(cache.serve(conditional, response)).isNotNull();
+        verify(response).status(HttpResponseStatus.NOT_MODIFIED);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_vary_headers_select_variant() {
+        HttpHeaders varyHeaders = new DefaultHttpHeaders().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        record(request("/a", "gzip"), "gzipped", varyHeaders);
+        record(request("/a", null), "plain", varyHeaders);
+
+        assertThat(cache.serve(request("/a", "gzip"), response)).isNotNull();
+        assertThat(sentBody()).isEqualTo("gzipped");
+        assertThat(cache.serve(request("/a", "deflate"), response)).isNull();
+    }
+
+    @Test
+    public void test_eviction_releases_buffers() {
+        record(request("/a", null), "a", new DefaultHttpHeaders());
+        ResponseRecorder tooLarge = new ResponseRecorder().add(cache.target(request("/big", null)));
+        tooLarge.start(cacheable());
+        tooLarge.record(Unpooled.wrappedBuffer(new byte[51]));
+        tooLarge.complete(HttpResponseStatus.OK, new DefaultHttpHeaders());
+        assertThat(cache.serve(request("/big", null), response)).isNull();
+
+        for (int i = 0; i < 10; i++) {
+            record(request("/" + i, null), "0123456789012345678901234567890123456789", new DefaultHttpHeaders());
+        }
+        assertThat(cache.getSize()).isLessThanOrEqualTo(100);
+        cache.invalidateAll();
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_clean_up_releases_expired_entries() throws Exception {
+        ResponseRecorder recorder = new ResponseRecorder().add(cache.target(request("/a", null)));
+        assertThat(recorder.start(response("max-age=1"))).isTrue();
+        recorder.record(Unpooled.wrappedBuffer(new byte[10]));
+        recorder.complete(HttpResponseStatus.OK, new DefaultHttpHeaders());
+        record(request("/b", null), "fresh", new DefaultHttpHeaders());
+        long stored = cache.getSize();
+
+        cache.cleanUp();
+        assertThat(cache.getSize()).isEqualTo(stored);
+        Thread.sleep(1100);
+        cache.cleanUp();
+        assertThat(cache.getSize()).isLessThan(stored).isPositive();
+        assertThat(cache.serve(request("/b", null), response)).isNotNull();
+        assertThat(sentBody()).isEqualTo("fresh");
+    }
+
+    private void record(HttpServerRequest request, String body, HttpHeaders responseHeaders) {
+        ResponseRecorder recorder = new ResponseRecorder().add(cache.target(request));
+        assertThat(recorder.start(cacheable())).isTrue();
+        ByteBuf chunk = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+        recorder.record(chunk);
+        chunk.release();
+        recorder.complete(HttpResponseStatus.OK, responseHeaders);
+    }
+
+    private static ContainerResponse cacheable() {
+        return response("max-age=60");
+    }
+
+    private static ContainerResponse response(String cacheControl, Annotation... annotations) {
+        OutBoundHeaders headers = new OutBoundHeaders();
+        if (cacheControl != null) {
+            headers.putSingle(HttpHeaderNames.CACHE_CONTROL.toString(), cacheControl);
+        }
+        ContainerResponse response = mock(ContainerResponse.class);
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHttpHeaders()).thenReturn(headers);
+        when(response.getAnnotations()).thenReturn(annotations);
+        return response;
+    }
+
+    private static CacheResponse cacheFor(int maxAge) {
+        return new CacheResponse() {
+            @Override
+            public int maxAge() {
+                return maxAge;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return CacheResponse.class;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private String sentBody() {
+        ArgumentCaptor<Publisher> sent = ArgumentCaptor.forClass(Publisher.class);
+        verify(response, atLeastOnce()).send(sent.capture());
+        ByteBuf body = ((Mono<ByteBuf>) sent.getValue()).block();
+        try {
+            return body.toString(StandardCharsets.UTF_8);
+        } finally {
+            body.release();
+        }
+    }
+
+    private static HttpServerRequest request(String uri, String acceptEncoding) {
+        HttpServerRequest request = mock(HttpServerRequest.class);
+        HttpHeaders headers = new DefaultHttpHeaders();
+        if (acceptEncoding != null) {
+            headers.set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.uri()).thenReturn(uri);
+        when(request.requestHeaders()).thenReturn(headers);
+        return request;
+    }
+}
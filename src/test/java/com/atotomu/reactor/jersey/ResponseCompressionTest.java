@@ -0,0 +1,162 @@
+package com.atotomu.reactor.jersey;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class ResponseCompressionTest {
+
+    private final ResponseCompression compression = new ResponseCompression();
+
+    @Test
+    public void test_accept_encoding_negotiation() {
+        assertThat(accepted(null)).isNull();
+        assertThat(accepted("identity")).isNull();
+        assertThat(accepted("gzip, deflate")).isEqualTo(ResponseCompression.ContentEncoding.GZIP);
+        assertThat(accepted("deflate")).isEqualTo(ResponseCompression.ContentEncoding.DEFLATE);
+        assertThat(accepted("gzip;q=0.5, deflate")).isEqualTo(ResponseCompression.ContentEncoding.DEFLATE);
+        assertThat(accepted("gzip;q=0")).isNull();
+        assertThat(accepted("*")).isEqualTo(ResponseCompression.ContentEncoding.GZIP);
+        assertThat(accepted("*, gzip;q=0")).isEqualTo(ResponseCompression.ContentEncoding.DEFLATE);
+    }
+
+    @Test
+    public void test_chunked_encoding_round_trip() throws Exception {
+        byte[] json = json(2000);
+        for (ResponseCompression.ContentEncoding encoding : ResponseCompression.ContentEncoding.values()) {
+            ResponseEncoder encoder = compression.newEncoder(encoding, ByteBufAllocator.DEFAULT);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            int half = json.length / 2;
+            drainTo(encoder.encode(Unpooled.copiedBuffer(json, 0, half)), compressed);
+            drainTo(encoder.finish(Unpooled.directBuffer().writeBytes(json, half, json.length - half)), compressed);
+
+            InputStream in = encoding == ResponseCompression.ContentEncoding.GZIP
+                    ? new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))
+                    : new InflaterInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+            assertThat(in).hasSameContentAs(new ByteArrayInputStream(json));
+            assertThat(compressed.size()).isLessThan(json.length / 4);
+        }
+    }
+
+    @Test
+    public void test_gzip_request_body_is_decoded() throws Exception {
+        byte[] json = json(500);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(json);
+        }
+        byte[] body = gzipped.toByteArray();
+        Flux<ByteBuf> content = RequestContentDecoder.decode(Flux.just(
+                Unpooled.wrappedBuffer(body, 0, 10), Unpooled.wrappedBuffer(body, 10, body.length - 10)),
+                RequestContentDecoder.wrapper("gzip"));
+
+        HttpContentInputStream in = new HttpContentInputStream(ByteBufAllocator.DEFAULT, content, ContentBufferLimits.UNLIMITED, true);
+        assertThat(in).hasSameContentAs(new ByteArrayInputStream(json));
+        in.close();
+    }
+
+    @Test
+    public void test_corrupt_request_body_is_bad_request() {
+        Flux<ByteBuf> content = RequestContentDecoder.decode(Flux.just(Unpooled.copiedBuffer("not gzip at all", StandardCharsets.UTF_8)),
+                RequestContentDecoder.wrapper("gzip"));
+
+        assertThatThrownBy(() -> content.blockLast())
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(400));
+    }
+
+    @Test
+    public void test_truncated_request_body_is_bad_request() throws Exception {
+        byte[] body = gzip(json(500));
+        for (ZlibWrapper wrapper : new ZlibWrapper[]{ZlibWrapper.GZIP, ZlibWrapper.ZLIB_OR_NONE}) {
+            byte[] compressed = wrapper == ZlibWrapper.GZIP ? body : deflate(json(500));
+            //gzip 去掉 trailer 和一部分数据，deflate 去掉结尾的数据
+            Flux<ByteBuf> content = RequestContentDecoder.decode(
+                    Flux.just(Unpooled.wrappedBuffer(compressed, 0, compressed.length - 12)), wrapper);
+
+            assertThatThrownBy(() -> content.blockLast())
+                    .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(400));
+        }
+    }
+
+    @Test
+    public void test_decompressed_length_is_limited_while_inflating() throws Exception {
+        //64MB 的 0 压缩后大约 64KB，一个 chunk 交给解码器
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 64; i++) {
+                out.write(zeros);
+            }
+        }
+        int maxContentLength = 1024 * 1024;
+        AtomicLong decoded = new AtomicLong();
+        Flux<ByteBuf> content = RequestContentDecoder.decode(Flux.just(Unpooled.wrappedBuffer(gzipped.toByteArray())),
+                ZlibWrapper.GZIP, maxContentLength);
+
+        assertThatThrownBy(() -> content.doOnNext(buf -> decoded.addAndGet(buf.readableBytes())).blockLast()).isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(413));
+        assertThat(decoded.get()).isZero();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(data);
+        }
+        return gzipped.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+            out.write(data);
+        }
+        return deflated.toByteArray();
+    }
+
+    private static ResponseCompression.ContentEncoding accepted(String acceptEncoding) {
+        DefaultHttpHeaders headers = new DefaultHttpHeaders();
+        if (acceptEncoding != null) {
+            headers.set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return ResponseCompression.accepted(headers);
+    }
+
+    private static byte[] json(int items) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void drainTo(ByteBuf buf, ByteArrayOutputStream out) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        out.write(bytes, 0, bytes.length);
+    }
+}
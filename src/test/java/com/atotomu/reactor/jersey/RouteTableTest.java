@@ -0,0 +1,51 @@
+package com.atotomu.reactor.jersey;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class RouteTableTest {
+
+    private final RouteTable resources =
+            RouteTable.scan(new ClassPathResourceConfig("com.atotomu.reactor.jersey.router"));
+
+    @Test
+    public void test_annotated_method_is_non_blocking() {
+        assertThat(resources.isNonBlocking("GET", "/hot")).isTrue();
+        assertThat(resources.isNonBlocking("GET", "hot/")).isTrue();
+    }
+
+    @Test
+    public void test_other_routes_fall_back_to_workers() {
+        assertThat(resources.isNonBlocking("POST", "/hot/post")).isFalse();
+        assertThat(resources.isNonBlocking("HEAD", "/hot")).isFalse();
+        assertThat(resources.isNonBlocking("GET", "/unknown")).isFalse();
+    }
+
+    @Test
+    public void test_templates_match_below_literal_prefix() {
+        RouteTable table = new RouteTable(Arrays.asList(
+                new RouteTable.Route("/", "GET", true, false),
+                new RouteTable.Route("/users/{id}", "GET", true, true),
+                new RouteTable.Route("/users/{id}/orders", "GET", true, false),
+                new RouteTable.Route("/users/me", "GET", false, false),
+                new RouteTable.Route("/files/{path: .+}", "GET", true, false),
+                new RouteTable.Route("/{any}/status", "GET", true, false)));
+
+        assertThat(table.isNonBlocking("GET", "/")).isTrue();
+        assertThat(table.isNonBlocking("GET", "/users/7")).isTrue();
+        assertThat(table.isCoalesced("/users/7")).isTrue();
+        assertThat(table.isNonBlocking("GET", "/users/7/orders")).isTrue();
+        assertThat(table.isCoalesced("/users/7/orders")).isFalse();
+        assertThat(table.isNonBlocking("GET", "/users/me")).isFalse();
+        assertThat(table.isNonBlocking("GET", "/files/a/b/c.txt")).isTrue();
+        assertThat(table.isNonBlocking("GET", "/users/status")).isTrue();
+        assertThat(table.isNonBlocking("GET", "/users/7/unknown")).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+package com.atotomu.reactor.jersey;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class WarmupTest {
+
+    @Test
+    public void test_warmup_requests_leave_no_trace() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        ResponseCache cache = new ResponseCache(1024 * 1024);
+        BufferTracker tracker = new BufferTracker();
+        JerseyBasedHandler handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .addValueProvider(JacksonProvider.class)
+                .withResponseCache(cache)
+                .withRequestCoalescing(new RequestCoalescer())
+                .withMetricRegistry(registry)
+                .withBufferTracking(tracker)
+                .withWarmup(new Warmup(2, 2)
+                        .addRequest("GET", "/hot")
+                        .addRequest("POST", "/hot/post", "application/json", "{\"name\":\"warm\",\"id\":1}"))
+                .build();
+        try {
+            assertThat(counts(registry)).containsOnly(0L);
+            assertThat(cache.getMisses()).isZero();
+            assertThat(cache.getSize()).isZero();
+            assertThat(tracker.getTrackedRequests()).isZero();
+
+            NettyContext server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+            try {
+                assertThat(HttpClient.create(server.address().getPort()).get("/hot")
+                        .flatMap(response -> response.receive().aggregate().asString())
+                        .block(Duration.ofSeconds(10))).isEqualTo("hot");
+            } finally {
+                server.dispose();
+            }
+            assertThat(counts(registry)).contains(1L);
+            assertThat(cache.getMisses()).isEqualTo(1);
+            assertThat(tracker.getTrackedRequests()).isEqualTo(1);
+        } finally {
+            handler.close();
+        }
+    }
+
+    /**
+     * 所有计数类指标（counter、meter、timer、histogram）的值
+     */
+    private static List<Long> counts(MetricRegistry registry) {
+        return registry.getMetrics().values().stream()
+                .filter(metric -> metric instanceof Counting)
+                .map(metric -> ((Counting) metric).getCount())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+package com.atotomu.reactor.jersey;
+
+import com.atotomu.reactor.jersey.router.ServiceHot;
+import org.junit.Test;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+public class WorkerPoolTest {
+
+    private static final Pattern CONTENT_LENGTH = Pattern.compile("(?i)content-length: *([0-9]+)");
+
+    @Test
+    public void test_full_queue_is_service_unavailable() throws Exception {
+        WorkerPool pool = new WorkerPool(1, 1, 10, TimeUnit.SECONDS, 3);
+        JerseyBasedHandler handler = JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .withWorkerPool(pool)
+                .build();
+        NettyContext server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+        ServiceHot.release = new CountDownLatch(1);
+        try (Socket running = connect(server); Socket queued = connect(server)) {
+            send(running, "GET /hot/wait");
+            await(() -> pool.getActiveThreads() == 1);
+            send(queued, "GET /hot/wait");
+            await(() -> pool.getQueueDepth() == 1);
+
+            String rejected = exchange(server, "GET /hot/wait");
+            assertThat(rejected).startsWith("HTTP/1.1 503").containsIgnoringCase("retry-after: 3");
+            assertThat(pool.getRejectedRequests()).isEqualTo(1);
+
+            ServiceHot.release.countDown();
+            assertThat(read(running)).startsWith("HTTP/1.1 200").endsWith("released");
+            assertThat(read(queued)).startsWith("HTTP/1.1 200").endsWith("released");
+        } finally {
+            ServiceHot.release.countDown();
+            server.dispose();
+            handler.close();
+        }
+    }
+
+    @Test
+    public void test_rejection_thrown_by_resource_is_not_service_unavailable() throws Exception {
+        assertResourceRejectionIsServerError(JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .withWorkerPool(new WorkerPool(1, 1, 10, TimeUnit.SECONDS))
+                .build());
+        assertResourceRejectionIsServerError(JerseyBasedHandler.builder()
+                .withClassPath("com.atotomu.reactor.jersey.router")
+                .withDisruptorDispatcher(new DisruptorDispatcher(4, 1))
+                .build());
+    }
+
+    private static void assertResourceRejectionIsServerError(JerseyBasedHandler handler) throws Exception {
+        NettyContext server = HttpServer.create("127.0.0.1", 0).newHandler(handler).block();
+        try {
+            assertThat(exchange(server, "GET /hot/rejected")).startsWith("HTTP/1.1 500");
+        } finally {
+            server.dispose();
+            handler.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Socket connect(NettyContext server) throws IOException {
+        Socket socket = new Socket(server.address().getAddress(), server.address().getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String requestLine) throws IOException {
+        socket.getOutputStream().write((requestLine + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String exchange(NettyContext server, String requestLine) throws IOException {
+        try (Socket socket = connect(server)) {
+            send(socket, requestLine);
+            return read(socket);
+        }
+    }
+
+    /**
+     * 有 Content-Length 时读完响应体，否则读取到连接关闭
+     */
+    private static String read(Socket socket) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        InputStream in = socket.getInputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            response.write(buffer, 0, n);
+            if (complete(response.toString("ISO-8859-1"))) {
+                break;
+            }
+        }
+        return response.toString("ISO-8859-1");
+    }
+
+    private static boolean complete(String response) {
+        int headEnd = response.indexOf("\r\n\r\n");
+        if (headEnd < 0) {
+            return false;
+        }
+        Matcher matcher = CONTENT_LENGTH.matcher(response.substring(0, headEnd));
+        return matcher.find() && response.length() - headEnd - 4 >= Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.atotomu.reactor.jersey.router;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+@Path("/async")
+public class ServiceAsync {
+
+    /**
+     * 和服务器无关的 event loop，模拟在其他连接上产生的异步结果
+     */
+    public static final EventLoopGroup EVENT_LOOP = new DefaultEventLoopGroup(1);
+
+    @GET
+    @Path("/mono/{id: [0-9]+}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Mono<UserTest> mono(@PathParam("id") int id) {
+        return Mono.delay(Duration.ofMillis(10)).map(tick -> user(id));
+    }
+
+    @GET
+    @Path("/empty")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Mono<UserTest> empty() {
+        return Mono.empty();
+    }
+
+    @GET
+    @Path("/future/{id: [0-9]+}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<UserTest> future(@PathParam("id") int id) {
+        return CompletableFuture.supplyAsync(() -> user(id));
+    }
+
+    @GET
+    @Path("/flux/{count: [0-9]+}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Flux<UserTest> flux(@PathParam("count") int count) {
+        return Flux.range(1, count).map(ServiceAsync::user);
+    }
+
+    @GET
+    @Path("/sse/{count: [0-9]+}")
+    @Produces("text/event-stream")
+    public Flux<UserTest> sse(@PathParam("count") int count) {
+        return Flux.interval(Duration.ofMillis(5)).take(count).map(i -> user(i.intValue() + 1));
+    }
+
+    @GET
+    @Path("/ndjson/{count: [0-9]+}")
+    @Produces("application/x-ndjson")
+    public Flux<UserTest> ndjson(@PathParam("count") int count) {
+        return Flux.interval(Duration.ofMillis(5)).take(count).map(i -> user(i.intValue() + 1));
+    }
+
+    @GET
+    @Path("/bytes/{size: [0-9]+}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Mono<byte[]> bytes(@PathParam("size") int size) {
+        return Mono.create(sink -> EVENT_LOOP.execute(() -> sink.success(new byte[size])));
+    }
+
+    private static UserTest user(int id) {
+        return new UserTest("name-" + id, id, "first-" + id);
+    }
+}
@@ -0,0 +1,62 @@
+package com.atotomu.reactor.jersey.router;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author wangtong
+ * @since 1.0
+ */
+@Path("/bulk")
+public class ServiceBulk {
+
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.TEXT_PLAIN)
+    public String upload(InputStream body) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            total += read;
+        }
+        return String.valueOf(total);
+    }
+
+    @GET
+    @Path("/{size: [0-9]+}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public StreamingOutput download(@PathParam("size") int size) {
+        return output -> {
+            byte[] chunk = new byte[8192];
+            for (int written = 0; written < size; written += chunk.length) {
+                output.write(chunk, 0, Math.min(chunk.length, size - written));
+            }
+        };
+    }
+
+    @GET
+    @Path("/bytes/{size: [0-9]+}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public byte[] bytes(@PathParam("size") int size) {
+        return new byte[size];
+    }
+
+    @GET
+    @Path("/fail")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public StreamingOutput fail() {
+        return output -> {
+            output.write(new byte[64 * 1024]);
+            throw new IllegalStateException("failed after writing");
+        };
+    }
+}
@@ -1,11 +1,16 @@
 package com.atotomu.reactor.jersey.router;
 
+import com.atotomu.reactor.jersey.NonBlocking;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author wangtong
@@ -14,7 +19,13 @@ import javax.ws.rs.core.MediaType;
 @Path("/hot")
 public class ServiceHot {
 
+    /**
+     * /hot/wait 等待的信号，测试线程池排满时使用
+     */
+    public static volatile CountDownLatch release = new CountDownLatch(0);
+
     @GET
+    @NonBlocking
     public String get() {
         return "hot";
     }
@@ -27,4 +38,16 @@ public class ServiceHot {
         System.out.println("body = " + body);
         return new UserTest("keke", 200, "li");
     }
+
+    @GET
+    @Path("/wait")
+    public String await() throws InterruptedException {
+        return release.await(10, TimeUnit.SECONDS) ? "released" : "timeout";
+    }
+
+    @GET
+    @Path("/rejected")
+    public String rejected() {
+        throw new RejectedExecutionException("Rejected by the resource");
+    }
 }